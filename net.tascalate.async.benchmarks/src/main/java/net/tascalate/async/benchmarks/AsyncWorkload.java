@@ -0,0 +1,131 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+import static net.tascalate.async.CallContext.awaitAll;
+import static net.tascalate.async.CallContext.yield;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.Scheduler;
+import net.tascalate.async.SchedulerProvider;
+import net.tascalate.async.Sequence;
+import net.tascalate.async.async;
+
+/**
+ * Minimal {@link async} methods exercised by benchmarks.
+ *
+ * Every method does as little as possible besides the
+ * runtime operation under measurement, so the score
+ * reflects the cost of the async/await machinery itself.
+ */
+class AsyncWorkload {
+
+    @async
+    CompletionStage<Object> returnValue(Object value) {
+        return async(value);
+    }
+
+    @async
+    CompletionStage<Object> awaitOnce(CompletionStage<Object> stage) {
+        return async(await(stage));
+    }
+
+    @async
+    CompletionStage<Object> awaitOnceWith(CompletionStage<Object> stage, @SchedulerProvider Scheduler scheduler) {
+        return async(await(stage));
+    }
+
+    @async
+    CompletionStage<Long> awaitMany(CompletionStage<Long> stage, int count) {
+        long result = 0;
+        for (int i = 0; i < count; i++) {
+            result += await(stage);
+        }
+        return async(result);
+    }
+
+    @async
+    CompletionStage<Long> awaitEach(CompletionStage<Long>[] stages) {
+        long result = 0;
+        for (CompletionStage<Long> stage : stages) {
+            result += await(stage);
+        }
+        return async(result);
+    }
+
+    @async
+    CompletionStage<Long> awaitAllOf(CompletionStage<Long>[] stages) {
+        long result = 0;
+        for (Long value : awaitAll(Arrays.asList(stages))) {
+            result += value;
+        }
+        return async(result);
+    }
+
+    @async
+    AsyncGenerator<Integer> produceValues(int count) {
+        for (int i = 0; i < count; i++) {
+            yield(Integer.valueOf(i));
+        }
+        return yield();
+    }
+
+    @async
+    AsyncGenerator<Integer> produceStages(CompletionStage<Integer> stage, int count) {
+        for (int i = 0; i < count; i++) {
+            yield(stage);
+        }
+        return yield();
+    }
+
+    @async
+    CompletionStage<Long> consume(AsyncGenerator<Integer> generator) {
+        long result = 0;
+        try (AsyncGenerator<Integer> values = generator) {
+            CompletionStage<Integer> next;
+            while (null != (next = values.next())) {
+                result += await(next);
+            }
+        }
+        return async(result);
+    }
+
+    @async
+    CompletionStage<Long> drain(Sequence<CompletionStage<Integer>> sequence) {
+        long result = 0;
+        try (Sequence<CompletionStage<Integer>> values = sequence) {
+            CompletionStage<Integer> next;
+            while (null != (next = values.next())) {
+                result += await(next);
+            }
+        }
+        return async(result);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocations per suspended await, intended to be run with <code>-prof gc</code> 
+ * and compared by <code>gc.alloc.rate.norm</code>.
+ *
+ * <ul>
+ * <li><code>fanOutAwait</code> - async method that suspends on every of 
+ * {@link #FAN_OUT} pending futures, resumed inline on the same thread</li>
+ * <li><code>fanOutAwaitAll</code> - async method that suspends once on 
+ * all {@link #FAN_OUT} pending futures via <code>awaitAll</code></li>
+ * <li><code>applyToEitherGuard</code> - subscription shape of the former 
+ * <code>registerAwaitTarget</code>: terminate future plus <code>applyToEither</code> 
+ * dependent stage plus <code>whenComplete</code></li>
+ * <li><code>singleSubscription</code> - subscription shape of the await node:
+ * single <code>whenComplete</code> on the awaited future</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AwaitAllocationBenchmark {
+    static final int FAN_OUT = 16;
+
+    private static final Object VALUE = new Object();
+    private static final BiConsumer<Object, Throwable> RESUMER = (r, e) -> {};
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+
+    @Benchmark
+    @OperationsPerInvocation(FAN_OUT)
+    public Object fanOutAwait() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Long>[] triggers = new CompletableFuture[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            triggers[i] = new CompletableFuture<>();
+        }
+        CompletionStage<Long> result = workload.awaitEach(triggers);
+        // Method is suspended on each trigger in turn, resume it inline
+        for (CompletableFuture<Long> trigger : triggers) {
+            trigger.complete(1L);
+        }
+        return result.toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FAN_OUT)
+    public Object fanOutAwaitAll() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Long>[] triggers = new CompletableFuture[FAN_OUT];
+        for (int i = 0; i < FAN_OUT; i++) {
+            triggers[i] = new CompletableFuture<>();
+        }
+        CompletionStage<Long> result = workload.awaitAllOf(triggers);
+        // Method is resumed once by the last trigger
+        for (CompletableFuture<Long> trigger : triggers) {
+            trigger.complete(1L);
+        }
+        return result.toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object applyToEitherGuard() {
+        CompletableFuture<Object> trigger = new CompletableFuture<>();
+        CompletableFuture<Object> terminateMethod = new CompletableFuture<>();
+        terminateMethod.applyToEither(trigger, Function.identity()).whenComplete(RESUMER);
+        trigger.complete(VALUE);
+        return terminateMethod;
+    }
+
+    @Benchmark
+    public Object singleSubscription() {
+        CompletableFuture<Object> trigger = new CompletableFuture<>();
+        trigger.whenComplete(RESUMER);
+        trigger.complete(VALUE);
+        return trigger;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single await within an async method.
+ *
+ * <ul>
+ * <li><code>methodStart</code> - async method that never awaits, i.e.
+ * scheduler resolution plus continuation start/finish</li>
+ * <li><code>awaitCompleted</code> - await on an already completed future
+ * (no suspension)</li>
+ * <li><code>awaitCompletedLoop</code> - same as above, normalized per await</li>
+ * <li><code>awaitSuspended</code> - full suspend / resume cycle through
+ * <code>AsyncMethodExecutor.setupContinuation</code>, resumed inline on the same thread</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AwaitBenchmark {
+    static final int AWAITS_PER_METHOD = 64;
+
+    private static final Object VALUE = new Object();
+    private static final CompletionStage<Object> COMPLETED = CompletableFuture.completedFuture(VALUE);
+    private static final CompletionStage<Long> COMPLETED_LONG = CompletableFuture.completedFuture(1L);
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+
+    @Benchmark
+    public Object methodStart() {
+        return workload.returnValue(VALUE).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object awaitCompleted() {
+        return workload.awaitOnce(COMPLETED).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AWAITS_PER_METHOD)
+    public Object awaitCompletedLoop() {
+        return workload.awaitMany(COMPLETED_LONG, AWAITS_PER_METHOD).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object awaitSuspended() {
+        CompletableFuture<Object> trigger = new CompletableFuture<>();
+        CompletionStage<Object> result = workload.awaitOnce(trigger);
+        // Method is suspended now, resume it inline
+        trigger.complete(VALUE);
+        return result.toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.tascalate.async.util.Cache;
+
+/**
+ * Cost of the cache hit in {@link Cache} that serves scheduler resolution, 
+ * single-threaded and contended by 64 threads.
+ *
+ * <ul>
+ * <li><code>weakKeyed*</code> - striped weak-keyed cache used for class loader keys</li>
+ * <li><code>classValue*</code> - cache for class keys backed by <code>ClassValue</code></li>
+ * <li><code>legacy*</code> - former implementation: lookup key allocation, 
+ * stale entries expunging on every call and per-key mutexes on misses</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    private static final Function<Object, Object> PRODUCER = k -> new Object();
+    
+    private final ClassLoader classLoader = CacheBenchmark.class.getClassLoader();
+    
+    private final Cache<Object, Object> weakKeyed = new Cache<>();
+    private final Cache<Class<?>, Object> classValue = Cache.forClasses();
+    private final LegacyCache<Object, Object> legacy = new LegacyCache<>();
+
+    @Benchmark
+    public Object weakKeyedHit() {
+        return weakKeyed.get(classLoader, PRODUCER);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object weakKeyedHitContended() {
+        return weakKeyed.get(classLoader, PRODUCER);
+    }
+
+    @Benchmark
+    public Object classValueHit() {
+        return classValue.get(CacheBenchmark.class, PRODUCER);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object classValueHitContended() {
+        return classValue.get(CacheBenchmark.class, PRODUCER);
+    }
+
+    @Benchmark
+    public Object legacyHit() {
+        return legacy.get(classLoader, PRODUCER);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object legacyHitContended() {
+        return legacy.get(classLoader, PRODUCER);
+    }
+    
+    static final class LegacyCache<K, V> {
+        private final ConcurrentMap<Reference<K>, Object> producerMutexes = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Reference<K>, V> valueMap = new ConcurrentHashMap<>();
+        private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+        V get(K key, Function<? super K, ? extends V> producer) {
+            for (Reference<? extends K> ref; (ref = queue.poll()) != null;) {
+                valueMap.remove(ref);
+            }
+            Reference<K> lookupKeyRef = new KeyReference<K>(key, null);
+            V value = valueMap.get(lookupKeyRef);
+            if (value != null) {
+                return value;
+            }
+            Object mutex = producerMutexes.computeIfAbsent(lookupKeyRef, k -> new Object());
+            synchronized (mutex) {
+                try {
+                    value = valueMap.get(lookupKeyRef);
+                    if (value == null) {
+                        value = producer.apply(key);
+                        valueMap.put(new KeyReference<K>(key, queue), value);
+                    }
+                } finally {
+                    producerMutexes.remove(lookupKeyRef, mutex);
+                }
+            }
+            return value;
+        }
+    }
+
+    static final class KeyReference<K> extends WeakReference<K> {
+        private final int referentHashCode;
+
+        KeyReference(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            referentHashCode = key == null ? 0 : key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return referentHashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (null == other || other.getClass() != KeyReference.class) {
+                return false;
+            }
+            Object r1 = this.get();
+            Object r2 = ((KeyReference<?>) other).get();
+            return null == r1 ? null == r2 : r1.equals(r2);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.Window;
+
+/**
+ * Cost of draining <code>AsyncGenerator.readyFirst(...)</code>
+ * (<code>CompletionSequence</code>) within an async method.
+ *
+ * <ul>
+ * <li><code>drainCompleted</code> - all promises are settled before draining</li>
+ * <li><code>drainPending</code> - promises are settled one by one while the
+ * consumer is suspended, every settlement resumes the consumer</li>
+ * <li><code>drainWindowed</code> - all promises are settled before draining, 
+ * pulled via sliding {@link Window} of 16 promises</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionSequenceBenchmark {
+
+    @Param({"16", "1024"})
+    int size;
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+    private List<CompletionStage<Integer>> completed;
+
+    @Setup
+    public void setup() {
+        completed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            completed.add(CompletableFuture.completedFuture(i));
+        }
+    }
+
+    @Benchmark
+    public Object drainCompleted() {
+        return workload.drain(AsyncGenerator.readyFirst(completed)).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object drainWindowed() {
+        return workload.drain(AsyncGenerator.readyFirst(completed, Window.of(16))).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object drainPending() {
+        List<CompletableFuture<Integer>> pending = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pending.add(new CompletableFuture<>());
+        }
+        CompletionStage<Long> result = workload.drain(AsyncGenerator.readyFirst(pending));
+        // Consumer is suspended now, settle promises one by one
+        for (int i = 0; i < size; i++) {
+            pending.get(i).complete(i);
+        }
+        return result.toCompletableFuture().join();
+    }
+}
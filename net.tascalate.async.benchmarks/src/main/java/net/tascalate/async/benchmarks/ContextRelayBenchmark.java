@@ -0,0 +1,104 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.tascalate.async.ContextVar;
+
+/**
+ * Cost of relaying {@link ContextVar}-s with the wrapper created by {@link ContextVar#relay(ThreadLocal...)}, 
+ * i.e. what every resume of the contextual scheduler pays.
+ *
+ * <ul>
+ * <li><code>wrapAndRunSameContext</code> - the thread already holds the captured values</li>
+ * <li><code>wrapAndRunOtherContext</code> - every variable is replaced on run and restored after it</li>
+ * </ul>
+ * Run with <code>-prof gc</code> to see allocations per resume.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextRelayBenchmark {
+    private static final Runnable NOOP = () -> {};
+
+    @Param({"1", "5", "8"})
+    int vars;
+
+    private ThreadLocal<Object>[] threadLocals;
+    private Object[] values;
+    private Function<Runnable, Runnable> relay;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        @SuppressWarnings("unchecked")
+        ThreadLocal<Object>[] locals = new ThreadLocal[vars];
+        values = new Object[vars];
+        for (int i = 0; i < vars; i++) {
+            values[i] = "value-" + i;
+            locals[i] = new ThreadLocal<>();
+            locals[i].set(values[i]);
+        }
+        threadLocals = locals;
+        relay = ContextVar.relay(threadLocals);
+    }
+
+    @Benchmark
+    public Runnable wrapAndRunSameContext() {
+        Runnable result = relay.apply(NOOP);
+        result.run();
+        return result;
+    }
+
+    @Benchmark
+    public Runnable wrapAndRunOtherContext() {
+        Runnable result = relay.apply(NOOP);
+        for (ThreadLocal<Object> threadLocal : threadLocals) {
+            threadLocal.set("other");
+        }
+        result.run();
+        for (int i = 0; i < vars; i++) {
+            threadLocals[i].set(values[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The same async methods executed by the continuations engine (default) and 
+ * by the virtual threads engine, that requires Java 21 or above.
+ *
+ * <ul>
+ * <li><code>*Completed</code> - awaits on already completed futures (no suspension)</li>
+ * <li><code>*Suspended</code> - awaits on futures completed after the method is suspended, 
+ * i.e. full suspend / resume cycle per await</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EngineBenchmark {
+    static final int AWAITS_PER_METHOD = 16;
+
+    private static final CompletionStage<Long> COMPLETED_LONG = CompletableFuture.completedFuture(1L);
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+
+    @Benchmark
+    @Fork(1)
+    @OperationsPerInvocation(AWAITS_PER_METHOD)
+    public Object continuationsCompleted() {
+        return awaitCompleted();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dnet.tascalate.async.engine=virtual-threads")
+    @OperationsPerInvocation(AWAITS_PER_METHOD)
+    public Object virtualThreadsCompleted() {
+        return awaitCompleted();
+    }
+
+    @Benchmark
+    @Fork(1)
+    @OperationsPerInvocation(AWAITS_PER_METHOD)
+    public Object continuationsSuspended() {
+        return awaitSuspended();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dnet.tascalate.async.engine=virtual-threads")
+    @OperationsPerInvocation(AWAITS_PER_METHOD)
+    public Object virtualThreadsSuspended() {
+        return awaitSuspended();
+    }
+
+    private Object awaitCompleted() {
+        return workload.awaitMany(COMPLETED_LONG, AWAITS_PER_METHOD).toCompletableFuture().join();
+    }
+
+    private Object awaitSuspended() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Long>[] triggers = new CompletableFuture[AWAITS_PER_METHOD];
+        for (int i = 0; i < AWAITS_PER_METHOD; i++) {
+            triggers[i] = new CompletableFuture<>();
+        }
+        CompletionStage<Long> result = workload.awaitEach(triggers);
+        for (CompletableFuture<Long> trigger : triggers) {
+            trigger.complete(1L);
+        }
+        return result.toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.tascalate.async.AsyncGenerator;
+
+/**
+ * Cost of the yield / next handoff between an async generator
+ * (producer) and an async method that consumes it; scores are per
+ * single value. <code>yieldReadyValuesPrefetched</code> lets the producer 
+ * run ahead of the consumer via {@link AsyncGenerator#prefetch(int)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+    static final int VALUES_PER_GENERATOR = 64;
+    static final int PREFETCH = 16;
+
+    private static final CompletionStage<Integer> COMPLETED = CompletableFuture.completedFuture(1);
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_GENERATOR)
+    public Object yieldReadyValues() {
+        return workload.consume(workload.produceValues(VALUES_PER_GENERATOR)).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_GENERATOR)
+    public Object yieldReadyValuesPrefetched() {
+        return workload.consume(workload.produceValues(VALUES_PER_GENERATOR).prefetch(PREFETCH)).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_GENERATOR)
+    public Object yieldCompletedStages() {
+        return workload.consume(workload.produceStages(COMPLETED, VALUES_PER_GENERATOR)).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.tascalate.async.ContextVar;
+import net.tascalate.async.Scheduler;
+
+/**
+ * Cost of dispatching continuations via {@link Scheduler} implementations.
+ *
+ * <ul>
+ * <li><code>scheduleRoundTrip</code> - bare <code>Scheduler.schedule</code>
+ * of a no-op until its completion</li>
+ * <li><code>startOnScheduler</code> - async method with an explicit scheduler
+ * that awaits on an already completed future</li>
+ * <li><code>resumeOnScheduler</code> - async method that is resumed from a
+ * foreign thread, so the resume is dispatched via the scheduler</li>
+ * <li><code>resumeBurstOnScheduler</code> - {@link #BURST} async methods that are 
+ * resumed at once from a foreign thread, normalized per resume</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    @Param({"same-thread", "simple", "interruptible", "batching", "prioritized"})
+    String kind;
+
+    static final int BURST = 64;
+
+    private static final Object VALUE = new Object();
+    private static final CompletionStage<Object> COMPLETED = CompletableFuture.completedFuture(VALUE);
+    private static final Runnable NOOP = () -> {};
+
+    private final AsyncWorkload workload = new AsyncWorkload();
+
+    private ExecutorService executor;
+    private ExecutorService completer;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor  = Executors.newSingleThreadExecutor();
+        completer = Executors.newSingleThreadExecutor();
+        switch (kind) {
+            case "same-thread":
+                scheduler = Scheduler.sameThreadContextless();
+                break;
+            case "simple":
+                scheduler = Scheduler.nonInterruptible(executor);
+                break;
+            case "interruptible":
+                scheduler = Scheduler.interruptible(executor);
+                break;
+            case "batching":
+                scheduler = Scheduler.batching(Scheduler.nonInterruptible(executor));
+                break;
+            case "prioritized":
+                scheduler = Scheduler.prioritized(executor, ContextVar.from(new ThreadLocal<Integer>()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scheduler kind: " + kind);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        completer.shutdownNow();
+    }
+
+    @Benchmark
+    public Object scheduleRoundTrip() {
+        return scheduler.schedule(NOOP).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object startOnScheduler() {
+        return workload.awaitOnceWith(COMPLETED, scheduler).toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object resumeOnScheduler() {
+        CompletableFuture<Object> trigger = new CompletableFuture<>();
+        CompletionStage<Object> result = workload.awaitOnceWith(trigger, scheduler);
+        completer.execute(() -> trigger.complete(VALUE));
+        return result.toCompletableFuture().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Object resumeBurstOnScheduler() {
+        CompletableFuture<Object> trigger = new CompletableFuture<>();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Object>[] results = new CompletableFuture[BURST];
+        for (int i = 0; i < BURST; i++) {
+            results[i] = workload.awaitOnceWith(trigger, scheduler).toCompletableFuture();
+        }
+        completer.execute(() -> trigger.complete(VALUE));
+        return CompletableFuture.allOf(results).join();
+    }
+}
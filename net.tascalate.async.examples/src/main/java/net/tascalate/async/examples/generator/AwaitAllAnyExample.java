@@ -0,0 +1,106 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.awaitAll;
+import static net.tascalate.async.CallContext.awaitAny;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.tascalate.async.IndexedValue;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.CompletableTask;
+import net.tascalate.concurrent.Promise;
+
+public class AwaitAllAnyExample {
+    
+    final private static ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    public static void main(String[] args) throws Exception {
+        try {
+            System.out.println(bulkAwaits().get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    @async static Promise<String> bulkAwaits() {
+        // Results are in the order of the collection, not in the order of completion
+        List<String> all = awaitAll(Arrays.asList(
+            delayedValue("A", 300), delayedValue("B", 100), delayedValue("C", 200)
+        ));
+        check(Arrays.asList("A", "B", "C").equals(all), "Unexpected results of awaitAll: " + all);
+        
+        // The first completed stage wins, others are not cancelled
+        IndexedValue<String> first = awaitAny(Arrays.asList(
+            delayedValue("slow", 500), delayedValue("fast", 50)
+        ));
+        check(first.index == 1 && "fast".equals(first.value), "Unexpected result of awaitAny: " + first);
+        
+        // Any error resumes the method right away
+        try {
+            awaitAll(Arrays.asList(delayedValue("X", 500), failedValue("broken", 50)));
+            throw new IllegalStateException("awaitAll must fail");
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Failed as expected: " + ex.getMessage());
+        }
+        return async(all + ", " + first);
+    }
+    
+    static CompletionStage<String> delayedValue(String value, long delay) {
+        return CompletableTask.supplyAsync(() -> {
+            pause(delay);
+            return value;
+        }, executor);
+    }
+    
+    static CompletionStage<String> failedValue(String message, long delay) {
+        return CompletableTask.supplyAsync(() -> {
+            pause(delay);
+            throw new IllegalArgumentException(message);
+        }, executor);
+    }
+    
+    private static void pause(long delay) {
+        try { 
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        }
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
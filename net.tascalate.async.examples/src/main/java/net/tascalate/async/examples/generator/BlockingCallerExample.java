@@ -0,0 +1,62 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.tascalate.async.async;
+
+public class BlockingCallerExample {
+    
+    private static final CompletableFuture<String> first  = new CompletableFuture<>();
+    private static final CompletableFuture<String> second = new CompletableFuture<>();
+    private static CompletableFuture<String> waiterResult;
+
+    public static void main(String[] args) throws Exception {
+        // Both methods are suspended on the main thread, so both are resumed inline
+        waiterResult = waiter();
+        CompletableFuture<String> result = blockingCaller();
+        first.complete("first");
+        System.out.println(result.get(5, TimeUnit.SECONDS));
+    }
+    
+    @async static CompletableFuture<String> waiter() {
+        String v = await(second);
+        return async("waiter got " + v);
+    }
+    
+    // Resumes the waiter from the method body and blocks till it's done, 
+    // so the waiter must not be deferred till this method suspends or returns
+    @async static CompletableFuture<String> blockingCaller() throws Exception {
+        String v = await(first);
+        second.complete("second");
+        String w = waiterResult.get(2, TimeUnit.SECONDS);
+        return async("caller got " + v + ", " + w);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.tascalate.async.ContextVar;
+import net.tascalate.async.Scheduler;
+import net.tascalate.async.SchedulerProvider;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.CompletableTask;
+
+public class ContextRestoreExample {
+    
+    final private static ExecutorService foreignExecutor = Executors.newFixedThreadPool(2);
+    // Single thread, so every resume runs on the thread checked at the end
+    final private static ExecutorService ownExecutor = Executors.newSingleThreadExecutor();
+    
+    private static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+    public static void main(String[] argv) throws Exception {
+        try {
+            Scheduler scheduler = Scheduler.interruptible(ownExecutor, ContextVar.relay(TENANT));
+            // The pool thread already holds the value relayed, so the resume doesn't alter it
+            ownExecutor.submit(() -> TENANT.set("tenant-1")).get();
+            TENANT.set("tenant-1");
+            
+            String result = new ContextRestoreExample().switchTenant(scheduler).join();
+            String poolTenant = ownExecutor.submit(TENANT::get).get();
+            if (!"tenant-1".equals(poolTenant)) {
+                throw new IllegalStateException("Value set by the async method leaks into the pool thread: " + poolTenant);
+            }
+            System.out.println(result + ", pool thread keeps " + poolTenant);
+        } finally {
+            foreignExecutor.shutdownNow();
+            ownExecutor.shutdownNow();
+        }
+    }
+    
+    @async CompletableFuture<String> switchTenant(@SchedulerProvider Scheduler scheduler) {
+        await(waitString("1"));
+        // Altered by the method body while resumed on the pool thread
+        TENANT.set("tenant-2");
+        await(waitString("2"));
+        return async("Done in " + TENANT.get());
+    }
+    
+    static CompletionStage<String> waitString(final String value) {
+        return CompletableTask.supplyAsync(() -> {
+            try { 
+                Thread.sleep(100);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            }
+            return value;
+        }, foreignExecutor);
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.yield;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.Promise;
+import net.tascalate.javaflow.SuspendableIterator;
+
+public class NestedGeneratorsTest {
+    
+    private static final int DEPTH = 64;
+    private static final int COUNT = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        long start = System.currentTimeMillis();
+        long sum = consumer().get();
+        long expected = (long)COUNT * (COUNT + 1) / 2 + (long)COUNT * DEPTH;
+        if (sum != expected) {
+            throw new IllegalStateException("Expected " + expected + " but got " + sum);
+        }
+        System.out.println("Sum of " + DEPTH + " nested generators: " + sum);
+        System.out.println((System.currentTimeMillis() - start) + " ms");
+    }
+    
+    @async static Promise<Long> consumer() {
+        long sum = 0;
+        try (SuspendableIterator<Integer> values = nested(DEPTH).valuesIterator()) {
+            while (values.hasNext()) {
+                int v = values.next();
+                sum += v;
+            }
+        }
+        return async(sum);
+    }
+    
+    // Every generator but the innermost one is started while 
+    // its consumer is resumed by the outer one on the same thread
+    @async static AsyncGenerator<Integer> nested(int depth) {
+        if (depth == 0) {
+            for (int i = 1; i <= COUNT; i++) {
+                yield(i);
+            }
+        } else {
+            try (SuspendableIterator<Integer> values = nested(depth - 1).valuesIterator()) {
+                while (values.hasNext()) {
+                    int v = values.next();
+                    yield(v + 1);
+                }
+            }
+        }
+        return yield();
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.sleep;
+import static net.tascalate.async.CallContext.yield;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.Promise;
+import net.tascalate.javaflow.SuspendableIterator;
+
+public class PrefetchExample {
+    
+    private static final int PREFETCH = 4;
+    private static final int COUNT    = 100;
+    
+    private static final AtomicInteger produced = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Max values ahead of the consumer: " + slowConsumer().get());
+        System.out.println("Values before the error: " + failingProducer().get());
+    }
+    
+    // The producer runs ahead while the consumer sleeps, but never more than the buffer allows
+    @async static Promise<Integer> slowConsumer() {
+        produced.set(0);
+        int consumed = 0;
+        int maxAhead = 0;
+        long sum = 0;
+        try (SuspendableIterator<Integer> values = producer(COUNT, false).valuesIterator()) {
+            while (values.hasNext()) {
+                int v = values.next();
+                consumed++;
+                sum += v;
+                maxAhead = Math.max(maxAhead, produced.get() - consumed);
+                if (v % 10 == 0) {
+                    sleep(Duration.ofMillis(10));
+                }
+            }
+        }
+        check(consumed == COUNT, "Expected " + COUNT + " values but got " + consumed);
+        check(sum == (long)COUNT * (COUNT + 1) / 2, "Unexpected sum " + sum);
+        // One more value may be pending in the yield that waits for the room in the buffer 
+        check(maxAhead <= PREFETCH + 1, "Producer is too far ahead: " + maxAhead);
+        return async(maxAhead);
+    }
+    
+    // Buffered values are delivered before the error of the producer
+    @async static Promise<Integer> failingProducer() {
+        int consumed = 0;
+        try (SuspendableIterator<Integer> values = producer(PREFETCH - 1, true).valuesIterator()) {
+            while (values.hasNext()) {
+                values.next();
+                consumed++;
+            }
+            throw new IllegalStateException("Producer must fail");
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Failed as expected: " + ex.getMessage());
+        }
+        check(consumed == PREFETCH - 1, "Buffered values are lost: " + consumed);
+        return async(consumed);
+    }
+    
+    @async static AsyncGenerator<Integer> producer(int count, boolean fail) {
+        yield().prefetch(PREFETCH);
+        for (int i = 1; i <= count; i++) {
+            produced.incrementAndGet();
+            yield(i);
+        }
+        if (fail) {
+            throw new IllegalArgumentException("Producer failed after " + count + " values");
+        }
+        return yield();
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.Sequence;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.CompletableTask;
+import net.tascalate.concurrent.Promise;
+
+public class ReadyFirstExample {
+    
+    private static final int COUNT = 1000;
+    
+    final private static ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    public static void main(String[] args) throws Exception {
+        try {
+            System.out.println(completionOrder().get());
+            System.out.println("Sum of " + COUNT + " concurrently settled values: " + concurrentlySettled().get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    // Values are returned in the order of completion
+    @async static Promise<List<String>> completionOrder() {
+        List<String> result = new ArrayList<>();
+        try (Sequence<CompletionStage<String>> values = AsyncGenerator.readyFirst(
+                delayedValue("A", 300), delayedValue("B", 100), delayedValue("C", 200))) {
+            CompletionStage<String> next;
+            while (null != (next = values.next())) {
+                String v = await(next);
+                result.add(v);
+            }
+        }
+        check(Arrays.asList("B", "C", "A").equals(result), "Unexpected order: " + result);
+        return async(result);
+    }
+    
+    // Many stages settled by different threads at once are passed to the consumer without losses
+    @async static Promise<Long> concurrentlySettled() {
+        List<CompletionStage<Integer>> stages = new ArrayList<>();
+        for (int i = 1; i <= COUNT; i++) {
+            int v = i;
+            stages.add(CompletableTask.supplyAsync(() -> v, executor));
+        }
+        long sum = 0;
+        int count = 0;
+        try (Sequence<CompletionStage<Integer>> values = AsyncGenerator.readyFirst(stages, 64)) {
+            CompletionStage<Integer> next;
+            while (null != (next = values.next())) {
+                int v = await(next);
+                sum += v;
+                count++;
+            }
+        }
+        check(count == COUNT, "Expected " + COUNT + " values but got " + count);
+        check(sum == (long)COUNT * (COUNT + 1) / 2, "Unexpected sum " + sum);
+        return async(sum);
+    }
+    
+    static CompletionStage<String> delayedValue(String value, long delay) {
+        return CompletableTask.supplyAsync(() -> {
+            try { 
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            }
+            return value;
+        }, executor);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+import static net.tascalate.async.CallContext.sleep;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+
+import net.tascalate.async.async;
+import net.tascalate.concurrent.Promise;
+
+public class TimedAwaitExample {
+    
+    private static final String TIMER_THREAD = "tascalate-async-timer";
+    // Timeouts may expire up to a tick of the timer earlier
+    private static final long TOLERANCE_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        String result = timedAwaits().get();
+        System.out.println(result);
+    }
+    
+    @async static Promise<String> timedAwaits() throws Exception {
+        // Completed in time
+        String ready = await(CompletableFuture.completedFuture("ready"), Duration.ofSeconds(1));
+        
+        // Never completed, so the method is resumed with TimeoutException and the stage is cancelled
+        CompletableFuture<String> never = new CompletableFuture<>();
+        long start = System.nanoTime();
+        try {
+            await(never, Duration.ofMillis(100));
+            throw new IllegalStateException("Await must time out");
+        } catch (TimeoutException ex) {
+            System.out.println("Timed out: " + ex.getMessage());
+        }
+        check(elapsedMillis(start) >= 100 - TOLERANCE_MILLIS, "Await timed out too early");
+        check(never.isCancelled(), "Timed out stage must be cancelled");
+        check(!TIMER_THREAD.equals(Thread.currentThread().getName()), "Resumed on the timer thread");
+        
+        // Sleep doesn't block the thread
+        start = System.nanoTime();
+        sleep(Duration.ofMillis(200));
+        check(elapsedMillis(start) >= 200 - TOLERANCE_MILLIS, "Slept too short");
+        check(!TIMER_THREAD.equals(Thread.currentThread().getName()), "Resumed on the timer thread");
+        
+        CompletionStage<String> delayed = slowValue("delayed", 50);
+        String late = await(delayed, Duration.ofSeconds(1));
+        return async(ready + ", " + late);
+    }
+    
+    @async static Promise<String> slowValue(String value, long delayMillis) {
+        sleep(Duration.ofMillis(delayMillis));
+        return async(value);
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
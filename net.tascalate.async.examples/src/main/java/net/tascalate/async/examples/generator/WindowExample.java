@@ -0,0 +1,134 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.examples.generator;
+
+import static net.tascalate.async.CallContext.async;
+import static net.tascalate.async.CallContext.await;
+import static net.tascalate.async.CallContext.sleep;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import net.tascalate.async.AsyncGenerator;
+import net.tascalate.async.Sequence;
+import net.tascalate.async.Window;
+import net.tascalate.async.async;
+import net.tascalate.concurrent.CompletableTask;
+import net.tascalate.concurrent.Promise;
+
+public class WindowExample {
+    
+    private static final int WINDOW = 3;
+    private static final int COUNT  = 30;
+    
+    final private static ExecutorService executor = Executors.newFixedThreadPool(8);
+    
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        try {
+            System.out.println("Consumed " + consumeAll().get() + " values, at most " + maxInFlight.get() + " in flight");
+            System.out.println("Created " + closeEarly().get() + " stages before close");
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    // Stages are created lazily by the stream, the next one as soon as any in-flight stage settles
+    @async static Promise<Integer> consumeAll() {
+        int count = 0;
+        try (Sequence<CompletionStage<Integer>> values = 
+                AsyncGenerator.readyFirst(IntStream.range(0, COUNT).mapToObj(i -> trackedValue(i, i % 5 * 10)), Window.of(WINDOW))) {
+            CompletionStage<Integer> next;
+            while (null != (next = values.next())) {
+                await(next);
+                count++;
+            }
+        }
+        check(count == COUNT, "Expected " + COUNT + " values but got " + count);
+        check(maxInFlight.get() <= WINDOW, "Window is exceeded: " + maxInFlight.get());
+        return async(count);
+    }
+    
+    // Closing the sequence stops pulling the endless source and cancels stages in flight, 
+    // all stages but the first few would run for a minute otherwise
+    @async static Promise<Integer> closeEarly() {
+        inFlight.set(0);
+        maxInFlight.set(0);
+        List<CompletionStage<Integer>> created = new CopyOnWriteArrayList<>();
+        try (Sequence<CompletionStage<Integer>> values = 
+                AsyncGenerator.readyFirst(IntStream.iterate(0, i -> i + 1).mapToObj(i -> {
+                    CompletionStage<Integer> stage = trackedValue(i, i < 5 ? 20 : 60_000);
+                    created.add(stage);
+                    return stage;
+                }), Window.of(WINDOW))) {
+            for (int i = 0; i < 5; i++) {
+                await(values.next());
+            }
+        }
+        // Settled but not consumed stages release their slots, so only the stages in flight are bounded
+        check(maxInFlight.get() <= WINDOW, "Window is exceeded: " + maxInFlight.get());
+        // The stage pulled concurrently with close is cancelled by the pulling thread
+        for (int i = 0; i < 100 && !allDone(created); i++) {
+            sleep(Duration.ofMillis(10));
+        }
+        check(allDone(created), "Stages in flight must be cancelled on close");
+        return async(created.size());
+    }
+    
+    private static boolean allDone(List<CompletionStage<Integer>> stages) {
+        return stages.stream().allMatch(s -> ((Future<?>)s).isDone());
+    }
+    
+    static CompletionStage<Integer> trackedValue(int value, long delay) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return CompletableTask.supplyAsync(() -> {
+            try { 
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return value;
+        }, executor);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+module net.tascalate.async.resolver.eventloop {
+    requires org.slf4j;
+    requires transitive net.tascalate.async.runtime;
+    
+    requires static metainf.services;
+    
+    exports net.tascalate.async.resolver.eventloop;
+
+    provides net.tascalate.async.spi.SchedulerResolver 
+             with net.tascalate.async.resolver.eventloop.GetEventLoopScheduler;
+}
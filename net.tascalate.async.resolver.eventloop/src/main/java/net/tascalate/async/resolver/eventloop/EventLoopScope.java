@@ -0,0 +1,108 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.resolver.eventloop;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import net.tascalate.async.Scheduler;
+import net.tascalate.async.scheduler.EventLoopScheduler;
+
+/**
+ * Scope that pins <code>@async</code> methods started within the scope to the event loops of the group.
+ * <p>When the key is specified, all methods are pinned to the same loop selected by the key 
+ * (like the request or the session identifier); otherwise every instance method is pinned to the loop 
+ * selected by the identity of its owner object. Methods started on the event loop thread outside of 
+ * any scope stay on the current loop.
+ */
+public final class EventLoopScope {
+    
+    private static final ThreadLocal<EventLoopScope> CURRENT = new ThreadLocal<>();
+    
+    private final EventLoopScheduler group;
+    private final Object key;
+    
+    private EventLoopScope(EventLoopScheduler group, Object key) {
+        this.group = group;
+        this.key   = key;
+    }
+    
+    public static void runWith(EventLoopScheduler group, Runnable code) {
+        runWith(group, null, code);
+    }
+    
+    public static void runWith(EventLoopScheduler group, Object key, Runnable code) {
+        supplyWith(group, key, () -> {
+            code.run();
+            return null;
+        });
+    }
+    
+    public static <V> V supplyWith(EventLoopScheduler group, Supplier<V> code) {
+        return supplyWith(group, null, code);
+    }
+    
+    public static <V> V supplyWith(EventLoopScheduler group, Object key, Supplier<V> code) {
+        try {
+            return callWith(group, key, code::get);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException("Unexpceted checked exception thrown", ex);
+        }
+    }
+    
+    public static <V> V callWith(EventLoopScheduler group, Callable<V> code) throws Exception {
+        return callWith(group, null, code);
+    }
+    
+    public static <V> V callWith(EventLoopScheduler group, Object key, Callable<V> code) throws Exception {
+        EventLoopScope previous = CURRENT.get();
+        CURRENT.set(new EventLoopScope(group, key));
+        try {
+            return code.call();
+        } finally {
+            if (null == previous) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+    
+    static Scheduler resolve(Object owner) {
+        EventLoopScope scope = CURRENT.get();
+        if (null == scope) {
+            return EventLoopScheduler.current();
+        } else if (null != scope.key) {
+            return scope.group.loopFor(scope.key);
+        } else if (null != owner) {
+            // Owner may have expensive or mutable hashCode, use identity instead
+            return scope.group.loopForHash(System.identityHashCode(owner));
+        } else {
+            return scope.group.loopFor(null);
+        }
+    }
+}
@@ -24,11 +24,15 @@
  */
 package net.tascalate.async.resolver.provided;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
 
 import org.kohsuke.MetaInfServices;
 
 import net.tascalate.async.Scheduler;
+import net.tascalate.async.spi.SchedulerBinding;
 import net.tascalate.async.spi.SchedulerProviderLookup;
 import net.tascalate.async.spi.SchedulerResolver;
 
@@ -42,6 +46,11 @@ public class GetSchedulerFromProvider implements SchedulerResolver {
         return 500;
     }
 
+    @Override
+    public boolean readsSchedulerProviders() {
+        return true;
+    }
+
     @Override
     public Scheduler resolve(Object owner, MethodHandles.Lookup ownerClassLookup) {
         if (null == owner) {
@@ -62,8 +71,56 @@ public class GetSchedulerFromProvider implements SchedulerResolver {
         }
     }
     
+    @Override
+    public SchedulerBinding bind(MethodHandles.Lookup ownerClassLookup) {
+        SchedulerProviderLookup.InstanceAccessor iAccessor = lookup.getInstanceAccessor(ownerClassLookup);
+        SchedulerProviderLookup.ClassAccessor cAccessor = lookup.getClassAccessor(ownerClassLookup);
+        if (null == iAccessor && null == cAccessor) {
+            return SchedulerBinding.none();
+        }
+        
+        // (Object owner)Scheduler
+        MethodHandle classReader;
+        if (null == cAccessor) {
+            classReader = NO_SCHEDULER;
+        } else {
+            Scheduler constant = cAccessor.isConstant() ? cAccessor.read() : null;
+            if (null != constant && null == iAccessor) {
+                return SchedulerBinding.constant(constant);
+            }
+            classReader = MethodHandles.dropArguments(
+                null != constant ? MethodHandles.constant(Scheduler.class, constant) : cAccessor.asMethodHandle(),
+                0, Object.class
+            );
+        }
+        
+        if (null == iAccessor) {
+            return SchedulerBinding.of(classReader);
+        } else {
+            // Static methods (owner is null) and instance methods without instance-level provider 
+            // are served by class-level provider
+            return SchedulerBinding.of(
+                MethodHandles.guardWithTest(IS_NULL, classReader, iAccessor.asMethodHandle())
+            );
+        }
+    }
+    
     @Override
     public String toString() {
         return String.format("%s[priority=%d, lookup=%s]", getClass().getSimpleName(), priority(), lookup);
     }
+    
+    private static final MethodHandle NO_SCHEDULER = MethodHandles.dropArguments(
+        MethodHandles.constant(Scheduler.class, null), 0, Object.class
+    );
+    private static final MethodHandle IS_NULL;
+    static {
+        try {
+            IS_NULL = MethodHandles.publicLookup().findStatic(
+                Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class)
+            );
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
 }
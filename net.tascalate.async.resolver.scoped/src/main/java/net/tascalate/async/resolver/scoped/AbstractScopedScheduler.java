@@ -27,6 +27,7 @@ package net.tascalate.async.resolver.scoped;
 import java.lang.invoke.MethodHandles;
 
 import net.tascalate.async.Scheduler;
+import net.tascalate.async.spi.SchedulerBinding;
 import net.tascalate.async.spi.SchedulerResolver;
 
 public class AbstractScopedScheduler implements SchedulerResolver {
@@ -46,7 +47,12 @@ public class AbstractScopedScheduler implements SchedulerResolver {
 
     @Override
     public Scheduler resolve(Object owner, MethodHandles.Lookup ownerClassLookup) {
-        return scope.currentExecutor.get();
+        return scope.current();
+    }
+
+    @Override
+    public SchedulerBinding bind(MethodHandles.Lookup ownerClassLookup) {
+        return scope.bind();
     }
 
     @Override
@@ -24,15 +24,27 @@
  */
 package net.tascalate.async.resolver.scoped;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
 import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 
 import net.tascalate.async.Scheduler;
+import net.tascalate.async.ScopedContextVar;
+import net.tascalate.async.spi.SchedulerBinding;
 
 public enum SchedulerScope {
     DEFAULTS, DEFAULTS_OVERRIDE, PROVIDER_OVERRIDE;
     
-    final ThreadLocal<Scheduler> currentExecutor = new ThreadLocal<>();
+    // Scoped value when supported by Java runtime, thread local otherwise
+    private final ScopedContextVar<Scheduler> scopedExecutor = Support.USE_SCOPED_VALUES ? ScopedContextVar.newInstance() : null;
+    private final ThreadLocal<Scheduler> currentExecutor = Support.USE_SCOPED_VALUES ? null : new ThreadLocal<>();
+    
+    // Invalidated when the scope is used for the first time
+    private final SwitchPoint unused = new SwitchPoint();
+    private volatile boolean used;
     
     public void runWith(Scheduler ctxExecutor, Runnable code) {
         supplyWith(ctxExecutor, () -> {
@@ -53,6 +65,12 @@ public enum SchedulerScope {
     
     
     public <V> V callWith(Scheduler ctxExecutor, Callable<V> code) throws Exception {
+        if (!used) {
+            markUsed();
+        }
+        if (null != scopedExecutor) {
+            return scopedExecutor.callWith(ctxExecutor, code);
+        }
         Scheduler previous = currentExecutor.get();
         currentExecutor.set(ctxExecutor);
         try {
@@ -65,4 +83,44 @@ public enum SchedulerScope {
             }
         }
     }
+    
+    Scheduler current() {
+        return null != scopedExecutor ? scopedExecutor.get() : currentExecutor.get();
+    }
+    
+    SchedulerBinding bind() {
+        if (used) {
+            return SchedulerBinding.of(
+                null != scopedExecutor ? scopedExecutor.asMethodHandle() : THREAD_LOCAL_GET.bindTo(currentExecutor)
+            );
+        } else {
+            // Until the scope is used there is nothing to resolve
+            return SchedulerBinding.none().validWhile(unused);
+        }
+    }
+    
+    private synchronized void markUsed() {
+        if (!used) {
+            used = true;
+            SwitchPoint.invalidateAll(new SwitchPoint[] {unused});
+        }
+    }
+    
+    private static final class Support {
+        // Enabled by default, -Dnet.tascalate.async.scopedValues=false falls back to thread locals
+        static final boolean USE_SCOPED_VALUES = 
+            ScopedContextVar.isSupported() && 
+            Boolean.parseBoolean(System.getProperty("net.tascalate.async.scopedValues", "true"));
+    }
+    
+    private static final MethodHandle THREAD_LOCAL_GET;
+    static {
+        try {
+            THREAD_LOCAL_GET = MethodHandles.publicLookup()
+                                            .findVirtual(ThreadLocal.class, "get", MethodType.methodType(Object.class))
+                                            .asType(MethodType.methodType(Scheduler.class, ThreadLocal.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
 }
@@ -24,6 +24,7 @@
  */
 module net.tascalate.async.runtime {
     requires org.slf4j;
+    requires static jdk.jfr;
     requires transitive net.tascalate.javaflow.api;
     requires transitive net.tascalate.javaflow.extras;
     
@@ -33,4 +34,7 @@ module net.tascalate.async.runtime {
     exports net.tascalate.async.spi;
     
     uses net.tascalate.async.spi.SchedulerResolver;
+    uses net.tascalate.async.spi.AwaitableInspector;
+    uses net.tascalate.async.spi.StageCanceller;
+    uses net.tascalate.async.spi.AsyncMethodListener;
 }
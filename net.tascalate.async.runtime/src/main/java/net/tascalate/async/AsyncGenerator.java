@@ -24,6 +24,7 @@
  */
 package net.tascalate.async;
 
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Stream;
@@ -69,6 +70,21 @@ public interface AsyncGenerator<T> extends InteractiveSequence<CompletionStage<T
         };
     }
 
+    /**
+     * Let the generator method run ahead of the consumer: values yielded are buffered, 
+     * up to the size specified, and the method is suspended only when the buffer is full,
+     * so producing next values overlaps with consuming previous ones. A sequence yielded 
+     * occupies a single entry of the buffer.
+     * <p>May be called either by the consumer or inside the generator method as 
+     * <code>yield().prefetch(n)</code>, but only once per generator. In this mode 
+     * {@link YieldReply}-s returned to the generator method carry neither values 
+     * nor parameters of {@link #next(Object)}.
+     * @return this generator
+     */
+    default AsyncGenerator<T> prefetch(int size) {
+        throw new UnsupportedOperationException("Prefetch is not supported by " + getClass().getName());
+    }
+
     public static <T> Sequence<CompletionStage<T>> from(T readyValue) {
         return from(Stream.of(readyValue));
     }
@@ -88,9 +104,15 @@ public interface AsyncGenerator<T> extends InteractiveSequence<CompletionStage<T
     
     @SafeVarargs
     public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(F... pendingValues) {
-        return readyFirst(Stream.of(pendingValues));
+        return readyFirst(Arrays.asList(pendingValues));
     }
 
+    /**
+     * Sequence of stages in the order of completion.
+     * When the sequence is closed before the end, the stages that are not settled yet are cancelled;
+     * if the source is a {@link java.util.Collection} then the stages not enlisted yet are cancelled as well,
+     * otherwise the source is just not iterated further.
+     */
     public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(Iterable<? extends F> pendingValues) {
         return readyFirst(pendingValues, -1);
     } 
@@ -99,6 +121,16 @@ public interface AsyncGenerator<T> extends InteractiveSequence<CompletionStage<T
         return CompletionSequence.create(pendingValues, chunkSize);
     }
     
+    /**
+     * Sequence of stages in the order of completion with at most {@link Window#size()} 
+     * stages in flight; the next stage is pulled from the source as soon as any stage settles.
+     * The source is iterated lazily, so stages may be created on demand, for example 
+     * via {@link Iterable} that starts a request in {@link java.util.Iterator#next()}.
+     */
+    public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(Iterable<? extends F> pendingValues, Window window) {
+        return CompletionSequence.create(pendingValues, window);
+    }
+    
     public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(Stream<? extends F> pendingValues) {
         return readyFirst(pendingValues, -1);
     }
@@ -106,5 +138,14 @@ public interface AsyncGenerator<T> extends InteractiveSequence<CompletionStage<T
     public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(Stream<? extends F> pendingValues, int chunkSize) {
         return CompletionSequence.create(pendingValues, chunkSize);
     }
+    
+    /**
+     * Sequence of stages in the order of completion with at most {@link Window#size()} 
+     * stages in flight, see {@link #readyFirst(Iterable, Window)}; the stream is consumed lazily
+     * and stages are created by its mapping functions on demand.
+     */
+    public static <T, F extends CompletionStage<T>> Sequence<F> readyFirst(Stream<? extends F> pendingValues, Window window) {
+        return CompletionSequence.create(pendingValues, window);
+    }
 
 }
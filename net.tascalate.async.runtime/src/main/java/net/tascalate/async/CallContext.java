@@ -24,8 +24,12 @@
  */
 package net.tascalate.async;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
 
 import net.tascalate.async.core.AsyncMethodExecutor;
 import net.tascalate.async.core.InternalCallContext;
@@ -49,6 +53,57 @@ public class CallContext {
         return AsyncMethodExecutor.await(future);
     }
     
+    /**
+     * Wait for the {@link CompletionStage} within {@link async} method at most the timeout specified.
+     * 
+     * When the timeout expires the {@link async} method is resumed with {@link TimeoutException}
+     * and the {@link CompletionStage} is cancelled. All timeouts share the single hashed-wheel timer,
+     * so the precision is limited by its tick (10 milliseconds by default).
+     */
+    public @suspendable static <T> T await(CompletionStage<T> future, Duration timeout) throws TimeoutException, CancellationException, InvalidCallContextException {
+        return AsyncMethodExecutor.await(future, timeout);
+    }
+    
+    /**
+     * Wait for all {@link CompletionStage}-s within {@link async} method.
+     * 
+     * The {@link async} method is suspended once for the whole collection and resumed when 
+     * the last stage returns the result or when any stage throws the error, 
+     * the results are returned in the order of the collection.
+     */
+    public @suspendable static <T> List<T> awaitAll(Collection<? extends CompletionStage<? extends T>> futures) throws CancellationException, InvalidCallContextException {
+        return AsyncMethodExecutor.awaitAll(futures);
+    }
+    
+    /**
+     * Wait for the first of {@link CompletionStage}-s within {@link async} method.
+     * 
+     * The {@link async} method is suspended once for the whole collection and resumed when 
+     * the first stage returns or throws the result. Other stages are not cancelled.
+     */
+    public @suspendable static <T> IndexedValue<T> awaitAny(Collection<? extends CompletionStage<? extends T>> futures) throws CancellationException, InvalidCallContextException {
+        return AsyncMethodExecutor.awaitAny(futures);
+    }
+    
+    /**
+     * Suspend the {@link async} method for the duration specified without blocking the thread.
+     * 
+     * The method is resumed via its {@link Scheduler} when the duration elapses.
+     */
+    public @suspendable static void sleep(Duration duration) throws CancellationException, InvalidCallContextException {
+        AsyncMethodExecutor.sleep(duration);
+    }
+    
+    /**
+     * Wait for the object that is not a {@link CompletionStage} within {@link async} method.
+     * 
+     * The object must be adaptable to {@link CompletionStage} by one of the registered 
+     * {@link net.tascalate.async.spi.AwaitableInspector}-s, like a single-value publisher.
+     */
+    public @suspendable static <T> T await(Object awaitable) throws CancellationException, InvalidCallContextException {
+        return AsyncMethodExecutor.await(awaitable);
+    }
+    
     public static boolean interrupted() throws InvalidCallContextException {
         // Implementation is used only in @suspendable methods
         // @async methods get this call replaced with optimized 
@@ -109,6 +109,15 @@ public interface ContextVar<T> {
     }    
     
     
+    /**
+     * Create a variable backed by the <code>java.lang.ScopedValue</code> specified, 
+     * the parameter is untyped to keep the API compatible with Java 8.
+     * @see ScopedContextVar
+     */
+    public static <T> ContextVar<T> fromScopedValue(Object scopedValue) {
+        return ScopedContextVar.of(scopedValue);
+    }
+    
     public static Function<Runnable, Runnable> relay(ContextVar<?> contextVar) {
         return ContextualRunnable.relayContextVars(Collections.singletonList(contextVar));
     }
@@ -24,24 +24,27 @@
  */
 package net.tascalate.async;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 final class ContextualRunnable implements Runnable {
     private final Runnable delegate;
-    private final List<? extends ContextVar<?>> contextVars;
+    // Shared by all runnables of the same relay
+    private final ContextVar<?>[] contextVars;
+    private final int[] scopedVarIndices;
     
-    private List<Object> capturedContext;
+    private Object[] capturedContext;
+    // Position in scopedVarIndices of the next scoped value to bind
+    private int nextScopedVar;
+    private Runnable scopedBinding;
     
-    ContextualRunnable(Runnable delegate, List<? extends ContextVar<?>> contextVars) {
+    ContextualRunnable(Runnable delegate, ContextVar<?>[] contextVars, int[] scopedVarIndices) {
         this.delegate = delegate;
-        this.contextVars = null == contextVars ? 
-            Collections.emptyList() : 
-            Collections.unmodifiableList(contextVars);
+        this.contextVars = null == contextVars ? NO_VARS : contextVars;
+        this.scopedVarIndices = null == scopedVarIndices ? NO_INDICES : scopedVarIndices;
     }
     
     ContextualRunnable captureCurrentContext() {
@@ -51,10 +54,16 @@ final class ContextualRunnable implements Runnable {
 
     @Override
     public void run() {
-        List<Object> originalContext = captureContextVars(); 
-        restoreContextVars(capturedContext);
+        // Only slots that differ from the captured ones are altered, 
+        // so nothing is allocated when the thread already has the same context
+        Object[] originalContext = applyContextVars(capturedContext);
         try {
-            delegate.run();
+            if (scopedVarIndices.length == 0) {
+                delegate.run();
+            } else {
+                nextScopedVar = 0;
+                bindScopedVars();
+            }
         } finally {
             restoreContextVars(originalContext);
         }
@@ -62,33 +71,111 @@ final class ContextualRunnable implements Runnable {
     
     @Override
     public String toString() {
-        return String.format("%s[contexVars={%s}, capturedContext={%s}]", getClass().getSimpleName(), contextVars, capturedContext);
+        return String.format("%s[contexVars={%s}, capturedContext={%s}]", 
+                             getClass().getSimpleName(), Arrays.asList(contextVars), 
+                             null == capturedContext ? null : Arrays.asList(capturedContext));
     }
     
     static Function<Runnable, Runnable> relayContextVars(List<? extends ContextVar<?>> contextVars) {
         if (null == contextVars || contextVars.isEmpty()) {
             return Function.identity();
         }
-        return r -> new ContextualRunnable(r, contextVars).captureCurrentContext();
+        ContextVar<?>[] vars = contextVars.toArray(new ContextVar<?>[contextVars.size()]);
+        int[] scopedVarIndices = IntStream.range(0, vars.length)
+                                          .filter(i -> vars[i] instanceof ScopedContextVar)
+                                          .toArray();
+        return r -> new ContextualRunnable(r, vars, scopedVarIndices).captureCurrentContext();
     }
     
-    private List<Object> captureContextVars() {
-        return contextVars.stream().map(v -> v.get()).collect(Collectors.toList());
+    private Object[] captureContextVars() {
+        int size = contextVars.length;
+        Object[] result = new Object[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = contextVars[i].get();
+        }
+        return result;
     }
     
-    private void restoreContextVars(List<Object> contextState) {
-        Iterator<? extends ContextVar<?>> vars = contextVars.iterator();
-        Iterator<Object> values = contextState.iterator();
-        while (vars.hasNext() && values.hasNext()) {
-            @SuppressWarnings("unchecked")
-            ContextVar<Object> contextVar = (ContextVar<Object>)vars.next();
-            Object contextVal = values.next();
-            if (null == contextVal) {
-                contextVar.remove();
+    /**
+     * @return the values replaced, where unaltered slots are marked as {@link #UNCHANGED}, 
+     * or <code>null</code> when all variables already hold the state specified
+     */
+    private Object[] applyContextVars(Object[] contextState) {
+        Object[] result = null;
+        int size = contextVars.length;
+        for (int i = 0; i < size; i++) {
+            Object contextVal = contextState[i];
+            // Scoped values are bound by bindScopedVars
+            Object currentVal = contextVars[i] instanceof ScopedContextVar ? contextVal : contextVars[i].get();
+            if (currentVal == contextVal) {
+                if (null != result) {
+                    result[i] = UNCHANGED;
+                }
             } else {
-                contextVar.set(contextVal);
+                if (null == result) {
+                    result = new Object[size];
+                    Arrays.fill(result, 0, i, UNCHANGED);
+                }
+                result[i] = currentVal;
+                setContextVar(contextVars[i], contextVal);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Binds the remaining scoped values that differ from the captured ones and runs the delegate 
+     * in the innermost scope. Every nested scope re-enters this method via the same 
+     * {@link #scopedBinding}, so nothing is allocated when the values are already bound.
+     */
+    private void bindScopedVars() {
+        while (nextScopedVar < scopedVarIndices.length) {
+            int i = scopedVarIndices[nextScopedVar++];
+            @SuppressWarnings("unchecked")
+            ScopedContextVar<Object> contextVar = (ScopedContextVar<Object>)contextVars[i];
+            Object contextVal = capturedContext[i];
+            // Unbound values can't be unbound in nested scope, bound ones are not re-bound
+            if (null != contextVal && contextVar.get() != contextVal) {
+                if (null == scopedBinding) {
+                    scopedBinding = this::bindScopedVars;
+                }
+                contextVar.runWith(contextVal, scopedBinding);
+                return;
             }
         }
+        delegate.run();
+    }
+    
+    /**
+     * Restores the values replaced by {@link #applyContextVars(Object[])}. Unaltered slots held 
+     * the captured values originally, these are written back only if altered by the delegate.
+     * @param originalContext the result of {@link #applyContextVars(Object[])}, may be <code>null</code>
+     */
+    private void restoreContextVars(Object[] originalContext) {
+        int size = contextVars.length;
+        for (int i = 0; i < size; i++) {
+            if (contextVars[i] instanceof ScopedContextVar) {
+                // Scoped values are unbound on leaving the scope
+                continue;
+            }
+            Object contextVal = null == originalContext ? UNCHANGED : originalContext[i];
+            if (UNCHANGED == contextVal) {
+                contextVal = capturedContext[i];
+                if (contextVars[i].get() == contextVal) {
+                    continue;
+                }
+            }
+            setContextVar(contextVars[i], contextVal);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void setContextVar(ContextVar<?> contextVar, Object contextVal) {
+        if (null == contextVal) {
+            contextVar.remove();
+        } else {
+            ((ContextVar<Object>)contextVar).set(contextVal);
+        }
     }
     
     static String generateVarName() {
@@ -96,4 +183,7 @@ final class ContextualRunnable implements Runnable {
     }
     
     private static final AtomicLong COUNTER = new AtomicLong();
+    private static final ContextVar<?>[] NO_VARS = new ContextVar<?>[0];
+    private static final int[] NO_INDICES = new int[0];
+    private static final Object UNCHANGED = new Object();
 }
@@ -31,13 +31,32 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
+import net.tascalate.async.scheduler.BatchingScheduler;
+import net.tascalate.async.scheduler.EventLoopScheduler;
 import net.tascalate.async.scheduler.InterruptibleScheduler;
+import net.tascalate.async.scheduler.PriorityScheduler;
 import net.tascalate.async.scheduler.SimpleScheduler;
+import net.tascalate.async.scheduler.VirtualThreadScheduler;
 
 public interface Scheduler {
     
     public enum Characteristics {
-        INTERRUPTIBLE;
+        INTERRUPTIBLE,
+        /**
+         * Scheduler orders resumes by the priority captured in {@link Scheduler#contextualize(Runnable)}, 
+         * so the runtime passes the contextualized resume to {@link Scheduler#schedule(Runnable)} 
+         * as is and never resumes continuation inline, bypassing the scheduler.
+         */
+        PRIORITY,
+        /**
+         * Scheduler does not bind resumes to its own threads, so the virtual threads engine 
+         * may run methods of this scheduler on virtual threads and use the scheduler only 
+         * to contextualize method body. Methods of other schedulers always run on continuations.
+         * <p>Such methods are started asynchronously, on their own virtual threads, so schedulers 
+         * that start methods synchronously on the caller thread (like {@link #sameThreadContextless()}) 
+         * must not declare this characteristic.
+         */
+        VIRTUAL_THREADS;
     }
     
     default Set<Characteristics> characteristics() {
@@ -69,4 +88,57 @@ public interface Scheduler {
     public static Scheduler interruptible(ExecutorService executor, Function<? super Runnable, ? extends Runnable> contextualizer) {
         return new InterruptibleScheduler(executor, contextualizer);
     }
+    
+    /**
+     * Non-interruptible decorator that coalesces resumes of continuations 
+     * into the single submission to the delegate scheduler.
+     */
+    public static Scheduler batching(Scheduler delegate) {
+        return new BatchingScheduler(delegate);
+    }
+    
+    public static Scheduler batching(Scheduler delegate, int maxBatchSize) {
+        return new BatchingScheduler(delegate, maxBatchSize);
+    }
+    
+    /**
+     * Non-interruptible scheduler that dispatches resumes in weighted fair order, 
+     * the weight is read from the context variable when the continuation is suspended.
+     */
+    public static Scheduler prioritized(Executor executor, ContextVar<? extends Number> weightVar) {
+        return new PriorityScheduler(executor, weightVar);
+    }
+    
+    public static Scheduler prioritized(Executor executor, ContextVar<? extends Number> weightVar, Function<? super Runnable, ? extends Runnable> contextualizer) {
+        return new PriorityScheduler(executor, weightVar, contextualizer);
+    }
+    
+    /**
+     * Group of single-threaded event loops, one per available processor. 
+     * Use {@link EventLoopScheduler#loopFor(Object)} to pin <code>@async</code> methods to the loop.
+     */
+    public static EventLoopScheduler eventLoops() {
+        return new EventLoopScheduler();
+    }
+    
+    public static EventLoopScheduler eventLoops(int loopCount) {
+        return new EventLoopScheduler(loopCount);
+    }
+    
+    public static EventLoopScheduler eventLoops(int loopCount, Function<? super Runnable, ? extends Runnable> contextualizer) {
+        return new EventLoopScheduler(loopCount, contextualizer);
+    }
+    
+    /**
+     * Interruptible scheduler that resumes every continuation on a new virtual thread.
+     * Requires Java 21 or above.
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static Scheduler virtualThreads() {
+        return new VirtualThreadScheduler();
+    }
+    
+    public static Scheduler virtualThreads(Function<? super Runnable, ? extends Runnable> contextualizer) {
+        return new VirtualThreadScheduler(contextualizer);
+    }
 }
@@ -0,0 +1,148 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * {@link ContextVar} backed by <code>java.lang.ScopedValue</code>, available on Java 21 and above.
+ * <p>Scoped values are immutable: the value is bound only for the dynamic extent of 
+ * {@link #runWith(Object, Runnable)} / {@link #supplyWith(Object, Supplier)} / {@link #callWith(Object, Callable)}, 
+ * so {@link #set(Object)} and {@link #remove()} are not supported. When relayed via 
+ * {@link ContextVar#relay(ContextVar...)} the captured value is re-bound for the execution 
+ * of the continuation instead. Reading the scoped value costs no <code>ThreadLocal</code> map lookups.
+ * 
+ * @param <T> the type of the value
+ */
+public final class ScopedContextVar<T> implements ContextVar<T> {
+    private final Object scopedValue;
+    
+    private ScopedContextVar(Object scopedValue) {
+        this.scopedValue = scopedValue;
+    }
+    
+    /**
+     * @return true if scoped values are supported by the current Java runtime
+     */
+    public static boolean isSupported() {
+        return ScopedValues.isSupported();
+    }
+    
+    /**
+     * Create a variable backed by the new <code>java.lang.ScopedValue</code>
+     * @param <T> the type of the value
+     * @return the variable created
+     * @throws UnsupportedOperationException if scoped values are not supported
+     */
+    public static <T> ScopedContextVar<T> newInstance() {
+        return new ScopedContextVar<>(ScopedValues.newInstance());
+    }
+    
+    /**
+     * Create a variable backed by the existing <code>java.lang.ScopedValue</code>
+     * @param <T> the type of the value
+     * @param scopedValue the instance of <code>java.lang.ScopedValue</code>
+     * @return the variable created
+     * @throws IllegalArgumentException if the parameter is not a <code>java.lang.ScopedValue</code>
+     */
+    public static <T> ScopedContextVar<T> of(Object scopedValue) {
+        if (!ScopedValues.isScopedValue(scopedValue)) {
+            throw new IllegalArgumentException("Not a java.lang.ScopedValue: " + scopedValue);
+        }
+        return new ScopedContextVar<>(scopedValue);
+    }
+    
+    /**
+     * @return the underlying <code>java.lang.ScopedValue</code>
+     */
+    public Object scopedValue() {
+        return scopedValue;
+    }
+    
+    /**
+     * @return the value bound or <code>null</code> if the value is not bound
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() {
+        return (T)ScopedValues.get(scopedValue);
+    }
+    
+    @Override
+    public void set(T value) {
+        throw new UnsupportedOperationException("Scoped values are immutable, use runWith / supplyWith / callWith");
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Scoped values are immutable, use runWith / supplyWith / callWith");
+    }
+    
+    public void runWith(T value, Runnable code) {
+        ScopedValues.runWhere(scopedValue, value, code);
+    }
+    
+    public <V> V supplyWith(T value, Supplier<V> code) {
+        Object[] result = new Object[1];
+        runWith(value, () -> result[0] = code.get());
+        @SuppressWarnings("unchecked")
+        V typedResult = (V)result[0];
+        return typedResult;
+    }
+    
+    public <V> V callWith(T value, Callable<V> code) throws Exception {
+        Object[] result = new Object[1];
+        Exception[] error = new Exception[1];
+        runWith(value, () -> {
+            try {
+                result[0] = code.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                error[0] = ex;
+            }
+        });
+        if (null != error[0]) {
+            throw error[0];
+        }
+        @SuppressWarnings("unchecked")
+        V typedResult = (V)result[0];
+        return typedResult;
+    }
+    
+    /**
+     * @return method handle of type <code>()Object</code> that reads the value bound or <code>null</code>
+     */
+    public MethodHandle asMethodHandle() {
+        return ScopedValues.getter(scopedValue);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("<scoped-value-ctx-var>[%s]", scopedValue);
+    }
+}
@@ -24,15 +24,12 @@
  */
 package net.tascalate.async.core;
 
-import java.lang.reflect.Method;
-import java.util.concurrent.CancellationException;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Function;
 
 import net.tascalate.async.AsyncResult;
 import net.tascalate.async.Scheduler;
@@ -51,7 +48,7 @@ abstract public class AbstractAsyncMethod implements Runnable {
     private final AtomicLong blockerVersion = new AtomicLong(0);
     
     private volatile CompletionStage<?> originalAwait;
-    private volatile CompletableFuture<?> terminateMethod;
+    private volatile AwaitNode<?> currentAwait;
     
     protected AbstractAsyncMethod(Scheduler scheduler) {
         this.future = new ResultPromise<>();
@@ -62,6 +59,9 @@ abstract public class AbstractAsyncMethod implements Runnable {
         if (!state.compareAndSet(State.INITIAL, State.RUNNING)) {
             throw new IllegalStateException(getClass().getName() + " should be in INITIAL state");
         }
+        if (AsyncMethodListeners.ENABLED) {
+            AsyncMethodListeners.started(this);
+        }
         try {
             internalRun();
         } finally {
@@ -83,15 +83,31 @@ abstract public class AbstractAsyncMethod implements Runnable {
 
     @SuppressWarnings("unchecked")
     protected final <T> boolean success(T value) {
-        return ((ResultPromise<T>)future).internalSuccess(value);
+        boolean result = ((ResultPromise<T>)future).internalSuccess(value);
+        if (AsyncMethodListeners.ENABLED && result) {
+            AsyncMethodListeners.completed(this, null);
+        }
+        return result;
     }
     
     protected final <T> boolean failure(Throwable exception) {
-        return ((ResultPromise<?>)future).internalFailure(exception);
+        boolean result = ((ResultPromise<?>)future).internalFailure(exception);
+        if (AsyncMethodListeners.ENABLED && result) {
+            AsyncMethodListeners.completed(this, exception);
+        }
+        return result;
+    }
+    
+    /**
+     * Declaring class name and signature of the original <code>@async</code> method, overridden by the bytecode enhancer.
+     * Used for diagnostic only.
+     */
+    protected String methodSignature() {
+        return "<unknown>";
     }
     
     final void cancelAwaitIfNecessary() {
-        cancelAwaitIfNecessary(terminateMethod, originalAwait);
+        cancelAwaitIfNecessary(currentAwait, originalAwait);
     }
     
     final Scheduler scheduler() {
@@ -105,23 +121,60 @@ abstract public class AbstractAsyncMethod implements Runnable {
         );
     }
     
-    final Runnable createResumeHandler(Runnable originalResumer) {
+    /**
+     * @param suspended false for the initial start of the method, true for the resumption of the suspended one
+     */
+    final Runnable createResumeHandler(Runnable originalResumer, boolean suspended) {
         long currentBlockerVersion = blockerVersion.get();
         Runnable contextualResumer = scheduler.contextualize(originalResumer);
-        if (scheduler.characteristics().contains(Scheduler.Characteristics.INTERRUPTIBLE)) {
-            return createInterruptibleResumeHandler(contextualResumer, currentBlockerVersion);
+        Set<Scheduler.Characteristics> characteristics = scheduler.characteristics();
+        boolean prioritized = characteristics.contains(Scheduler.Characteristics.PRIORITY);
+        if (characteristics.contains(Scheduler.Characteristics.INTERRUPTIBLE)) {
+            return createInterruptibleResumeHandler(contextualResumer, currentBlockerVersion, prioritized);
         } else {
-            return createSimplifiedResumeHandler(contextualResumer, currentBlockerVersion);
+            // Inline resume would bypass the order of the prioritized scheduler
+            Thread suspendThread = prioritized ? null : Thread.currentThread();
+            return createSimplifiedResumeHandler(contextualResumer, currentBlockerVersion, prioritized, suspendThread, suspended);
         }        
     }
     
-    private Runnable createInterruptibleResumeHandler(Runnable contextualResumer, long currentBlockerVersion) {
+    /**
+     * Resume the suspended method via its scheduler, never inline on the current thread.
+     */
+    final void scheduleResume(Runnable originalResumer) {
+        long currentBlockerVersion = blockerVersion.get();
+        Runnable contextualResumer = scheduler.contextualize(originalResumer);
+        Set<Scheduler.Characteristics> characteristics = scheduler.characteristics();
+        boolean prioritized = characteristics.contains(Scheduler.Characteristics.PRIORITY);
+        if (characteristics.contains(Scheduler.Characteristics.INTERRUPTIBLE)) {
+            createInterruptibleResumeHandler(contextualResumer, currentBlockerVersion, prioritized).run();
+        } else {
+            createSimplifiedResumeHandler(contextualResumer, currentBlockerVersion, prioritized, null, true).run();
+        }
+    }
+    
+    /**
+     * @return true if the scheduler lets the method be resumed inline by the thread it was suspended on
+     */
+    final boolean resumesInline() {
+        Set<Scheduler.Characteristics> characteristics = scheduler.characteristics();
+        return !characteristics.contains(Scheduler.Characteristics.INTERRUPTIBLE) && 
+               !characteristics.contains(Scheduler.Characteristics.PRIORITY);
+    }
+    
+    private Runnable dispatching(Runnable contextualResumer, boolean prioritized) {
+        // Prioritized scheduler reads the priority from the contextualized resumer, so it's passed as is
+        return FlightRecorderEvents.ENABLED && !prioritized ? 
+               FlightRecorderEvents.dispatching(this, contextualResumer) : contextualResumer;
+    }
+    
+    private Runnable createInterruptibleResumeHandler(Runnable contextualResumer, long currentBlockerVersion, boolean prioritized) {
         return new Runnable() {
             @Override
             public void run() {
                 CompletionStage<?> resumeFuture;
                 try {
-                    resumeFuture = scheduler.schedule(contextualResumer);
+                    resumeFuture = scheduler.schedule(dispatching(contextualResumer, prioritized));
                 } catch (RejectedExecutionException ex) {
                     failure(ex);
                     return;
@@ -131,21 +184,28 @@ abstract public class AbstractAsyncMethod implements Runnable {
         };        
     }
     
-    private Runnable createSimplifiedResumeHandler(Runnable contextualResumer, long currentBlockerVersion) {
-        Thread suspendThread = Thread.currentThread();
+    private Runnable createSimplifiedResumeHandler(Runnable contextualResumer, long currentBlockerVersion, boolean prioritized, 
+                                                   Thread suspendThread, boolean suspended) {
         return new Runnable() {
             @Override
             public void run() {
+                // Is it possible to use originalResumer here, i.e. one without context???
                 if (Thread.currentThread() == suspendThread) {
-                    // Is it possible to use originalResumer here, i.e. one without context???
-                    contextualResumer.run();
-                } else {
-                    try {
-                        scheduler.schedule(contextualResumer);
-                    } catch (RejectedExecutionException ex) {
-                        failure(ex);
+                    if (!suspended) {
+                        // Initial start runs synchronously, like a regular method call, 
+                        // the caller (e.g. consumer of the generator) relies on it
+                        contextualResumer.run();
+                        return;
+                    }
+                    if (AsyncMethodExecutor.resumeInline(contextualResumer)) {
+                        return;
                     }
                 }
+                try {
+                    scheduler.schedule(dispatching(contextualResumer, prioritized));
+                } catch (RejectedExecutionException ex) {
+                    failure(ex);
+                }
             }
         };        
     }
@@ -153,8 +213,8 @@ abstract public class AbstractAsyncMethod implements Runnable {
     private boolean registerResumeTarget(CompletionStage<?> resumePromise, long expectedBlockerVersion) {
         if (blockerVersion.compareAndSet(expectedBlockerVersion, expectedBlockerVersion + 1)) {
             // Save references for outer promise cancellation
-            this.terminateMethod = null;
-            this.originalAwait   = resumePromise;
+            this.currentAwait  = null;
+            this.originalAwait = resumePromise;
             // Re-check for race with main future cancellation
             cancelAwaitIfNecessary(null, resumePromise);
 
@@ -164,28 +224,29 @@ abstract public class AbstractAsyncMethod implements Runnable {
         }
     }
     
-    final <V> CompletionStage<V> registerAwaitTarget(CompletionStage<V> originalAwait) {
+    final <V> AwaitNode<V> registerAwaitTarget(CompletionStage<V> originalAwait) {
         blockerVersion.incrementAndGet();
-    	CompletableFuture<V> terminateMethod = new CompletableFuture<>();
-        CompletionStage<V> guardedAwait = terminateMethod.applyToEither(originalAwait, Function.identity());
+        AwaitNode<V> currentAwait = new AwaitNode<>(this, originalAwait);
         // Save references for outer promise cancellation
-        this.terminateMethod = terminateMethod;
-        this.originalAwait   = originalAwait;
+        this.currentAwait  = currentAwait;
+        this.originalAwait = originalAwait;
         // Re-check for race with main future cancellation
-        cancelAwaitIfNecessary(terminateMethod, originalAwait);
-        return guardedAwait;
+        cancelAwaitIfNecessary(currentAwait, originalAwait);
+        return currentAwait;
     }
 
-    private void cancelAwaitIfNecessary(CompletableFuture<?> terminateMethod, CompletionStage<?> originalAwait) {
+    private void cancelAwaitIfNecessary(AwaitNode<?> currentAwait, CompletionStage<?> originalAwait) {
         if (future.isCancelled()) {
-            this.terminateMethod = null;
+            this.currentAwait = null;
             // First terminate method to avoid exceptions in method
-            terminateMethod.completeExceptionally(CloseSignal.INSTANCE);
+            if (null != currentAwait) {
+                currentAwait.terminate();
+            }
             // No longer need reference
             this.originalAwait = null;
             // Then cancel promise we are waiting on
             if (null != originalAwait) {
-                cancelCompletionStage(originalAwait, true);
+                StageCancellers.cancel(originalAwait, true);
             }
         }
     }
@@ -219,6 +280,9 @@ abstract public class AbstractAsyncMethod implements Runnable {
                 return false;
             }
             if (super.cancel(mayInterruptIfRunning)) {
+                if (AsyncMethodListeners.ENABLED) {
+                    AsyncMethodListeners.cancelled(AbstractAsyncMethod.this);
+                }
                 cancelAwaitIfNecessary();
                 return true;
             } else {
@@ -226,34 +290,5 @@ abstract public class AbstractAsyncMethod implements Runnable {
             }
         }
     }
-    
-    
-    private static boolean cancelCompletionStage(CompletionStage<?> promise, boolean mayInterruptIfRunning) {
-        if (promise instanceof Future) {
-            Future<?> future = (Future<?>) promise;
-            return future.cancel(mayInterruptIfRunning);
-        } else {
-            Method m = completeExceptionallyMethodOf(promise);
-            if (null != m) {
-                try {
-                    return (Boolean) m.invoke(promise, new CancellationException());
-                } catch (final ReflectiveOperationException ex) {
-                    return false;
-                }
-            } else {
-                return false;
-            }
-        }
-    }
-    
-
-    private static Method completeExceptionallyMethodOf(CompletionStage<?> promise) {
-        try {
-            Class<?> clazz = promise.getClass();
-            return clazz.getMethod("completeExceptionally", Throwable.class);
-        } catch (ReflectiveOperationException | SecurityException ex) {
-            return null;
-        }
-    }
 
 }
@@ -25,6 +25,7 @@
 package net.tascalate.async.core;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
@@ -85,11 +86,11 @@ abstract public class AsyncGeneratorMethod<T> extends AbstractAsyncMethod {
     }
     
     protected @suspendable final YieldReply<T> yield(T readyValue) {
-        return generator.produce(AsyncGenerator.from(readyValue));
+        return generator.produce(CompletableFuture.completedFuture(readyValue));
     }
 
     protected @suspendable final YieldReply<T> yield(CompletionStage<T> pendingValue) {
-        return generator.produce(Sequence.of(pendingValue));
+        return generator.produce(pendingValue);
     }
 
     protected @suspendable final YieldReply<T> yield(Sequence<? extends CompletionStage<T>> values) {
@@ -24,20 +24,29 @@
  */
 package net.tascalate.async.core;
 
+import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandles;
-import java.util.concurrent.CancellationException;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 
 import org.apache.commons.javaflow.api.Continuation;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.tascalate.async.IndexedValue;
 import net.tascalate.async.InvalidCallContextException;
 import net.tascalate.async.Scheduler;
 import net.tascalate.async.suspendable;
+import net.tascalate.async.spi.AwaitableInspector;
+import net.tascalate.async.spi.StageCanceller;
 
 /**
  * 
@@ -48,12 +57,25 @@ public class AsyncMethodExecutor {
     private static final Logger log = LoggerFactory.getLogger(AsyncMethodExecutor.class);
 
     private static final AsyncMethodExecutor INSTANCE = new AsyncMethodExecutor();
+    
+    /**
+     * Max. number of nested resumptions that are run inline by the thread 
+     * before further ones are handed off to the scheduler.
+     */
+    private static final int INLINE_RESUME_BUDGET = 
+        Math.max(0, Integer.getInteger("net.tascalate.async.inlineResumeBudget", 1024));
+    
+    private static final ThreadLocal<Trampoline> TRAMPOLINE = ThreadLocal.withInitial(Trampoline::new);
 
     /**
      * Execute the {@link AbstractAsyncMethod}.
      */
     public static void execute(AbstractAsyncMethod asyncMethod) {
-        INSTANCE.executeTask(asyncMethod);
+        if (VirtualThreadEngine.ENABLED && VirtualThreadEngine.accepts(asyncMethod)) {
+            VirtualThreadEngine.execute(asyncMethod);
+        } else {
+            INSTANCE.executeTask(asyncMethod);
+        }
     }
 
     /**
@@ -65,7 +87,7 @@ public class AsyncMethodExecutor {
         // Start it
         ContinuationResumer<?, Throwable> originalInvoker = new ContinuationResumer<>(continuation);
         originalInvoker.setup(null, null);
-        asyncMethod.createResumeHandler(originalInvoker).run();
+        asyncMethod.createResumeHandler(originalInvoker, false).run();
     }
 
     /**
@@ -73,7 +95,14 @@ public class AsyncMethodExecutor {
     protected void resume(Continuation initialContinuation, Object context) {
         // Continue Continuation
         log.debug("Continueing continuation");
-        Continuation newContinuation = initialContinuation.resume(context);
+        Trampoline trampoline = TRAMPOLINE.get();
+        Continuation newContinuation;
+        trampoline.enterBody();
+        try {
+            newContinuation = initialContinuation.resume(context);
+        } finally {
+            trampoline.exitBody();
+        }
         // Continuation finished or suspended
 
         if (newContinuation == null) {
@@ -85,8 +114,14 @@ public class AsyncMethodExecutor {
         // Continuation suspended
         log.debug("Continuation suspended");
 
+        // Generator method parked in yield till the consumer replies
+        if (newContinuation.value() instanceof LazyGenerator) {
+            ((LazyGenerator<?>)newContinuation.value()).park(newContinuation);
+            return;
+        }
+
         // Check if the Continuation was suspended in our way.
-        if (!(newContinuation.value() instanceof SuspendParams)) {
+        if (!(newContinuation.value() instanceof AwaitNode)) {
             throw new InvalidCallContextException("Continuation was suspended incorrectly, use AsyncCall.await");
         }
 
@@ -95,19 +130,13 @@ public class AsyncMethodExecutor {
 
     protected <R, E extends Throwable> void setupContinuation(Continuation continuation) {
         @SuppressWarnings("unchecked")
-        SuspendParams<R> suspendParams = (SuspendParams<R>)continuation.value();
-        
-        CompletionStage<R> future   = suspendParams.future;
-        AbstractAsyncMethod suspendedMethod = suspendParams.suspendedMethod;
+        AwaitNode<R> awaitNode = (AwaitNode<R>)continuation.value();
         
         ContinuationResumer<? super R, Throwable> originalResumer = new ContinuationResumer<>(continuation);
-        Runnable wrappedResumer = suspendedMethod.createResumeHandler(originalResumer);
+        Runnable wrappedResumer = awaitNode.suspendedMethod.createResumeHandler(originalResumer, true);
         // Setup future and give it a chance to continue the Continuation
         try {
-            future.whenComplete((r, e) -> {
-                originalResumer.setup(r, e);
-                wrappedResumer.run();
-            });
+            awaitNode.subscribe(originalResumer, wrappedResumer);
         } catch (Throwable error) {
             resume(continuation, FutureResult.failure(error));
         }
@@ -116,34 +145,149 @@ public class AsyncMethodExecutor {
     /**
      */
     public @suspendable static <R, E extends Throwable> R await(CompletionStage<R> future) throws E {
-        return INSTANCE.awaitTask(future);
+        return INSTANCE.awaitTask(future, null);
+    }
+    
+    /**
+     * Wait for the {@link CompletionStage} at most the timeout specified. 
+     * On timeout the method is resumed with {@link java.util.concurrent.TimeoutException} 
+     * and the awaited stage is cancelled.
+     */
+    public @suspendable static <R, E extends Throwable> R await(CompletionStage<R> future, Duration timeout) throws E {
+        return INSTANCE.awaitTask(future, Objects.requireNonNull(timeout, "Timeout must not be null"));
+    }
+    
+    /**
+     * Wait for all stages, the method is suspended at most once for the whole collection.
+     * The first error of any stage is propagated as soon as it happens.
+     */
+    public @suspendable static <T, E extends Throwable> List<T> awaitAll(Collection<? extends CompletionStage<? extends T>> stages) throws E {
+        CompletionStage<?>[] array = stages.toArray(new CompletionStage<?>[stages.size()]);
+        // If all stages are already resolved don't suspend at all
+        Object[] results = new Object[array.length];
+        int i = 0;
+        for (; i < array.length; i++) {
+            CompletionStage<?> stage = array[i];
+            AwaitableInspector inspector = AwaitableInspectors.inspectorOf(stage);
+            AwaitableInspector.State state = inspector.stateOf(stage);
+            if (state == AwaitableInspector.State.SUCCESS) {
+                results[i] = inspector.resultOf(stage);
+            } else if (state == AwaitableInspector.State.FAILURE) {
+                @SuppressWarnings("unchecked")
+                E error = (E)inspector.errorOf(stage);
+                throw error;
+            } else {
+                break;
+            }
+        }
+        if (i == array.length) {
+            @SuppressWarnings("unchecked")
+            List<T> list = (List<T>)Collections.unmodifiableList(Arrays.asList(results));
+            return list;
+        }
+        return INSTANCE.awaitTask(CountdownNode.<T>all(array), null);
+    }
+    
+    /**
+     * Wait for the first completed stage, the method is suspended at most once for the whole collection.
+     * If the first completed stage fails then its error is propagated.
+     */
+    public @suspendable static <T, E extends Throwable> IndexedValue<T> awaitAny(Collection<? extends CompletionStage<? extends T>> stages) throws E {
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("Stages collection must not be empty");
+        }
+        CompletionStage<?>[] array = stages.toArray(new CompletionStage<?>[stages.size()]);
+        // If any stage is already resolved don't suspend at all
+        for (int i = 0; i < array.length; i++) {
+            CompletionStage<?> stage = array[i];
+            AwaitableInspector inspector = AwaitableInspectors.inspectorOf(stage);
+            AwaitableInspector.State state = inspector.stateOf(stage);
+            if (state == AwaitableInspector.State.SUCCESS) {
+                @SuppressWarnings("unchecked")
+                T result = (T)inspector.resultOf(stage);
+                return new IndexedValue<>(i, result);
+            } else if (state == AwaitableInspector.State.FAILURE) {
+                @SuppressWarnings("unchecked")
+                E error = (E)inspector.errorOf(stage);
+                throw error;
+            }
+        }
+        return INSTANCE.awaitTask(CountdownNode.<T>any(array), null);
+    }
+    
+    /**
+     * Suspend the method for the duration specified without blocking the thread.
+     */
+    public @suspendable static void sleep(Duration duration) {
+        INSTANCE.awaitTask(TimerWheel.INSTANCE.delay(duration), null);
+    }
+
+    /**
+     * Wait for the object that is not a {@link CompletionStage} but may be adapted 
+     * to it by one of the registered {@link AwaitableInspector}-s.
+     */
+    public @suspendable static <R, E extends Throwable> R await(Object awaitable) throws E {
+        return INSTANCE.awaitTask(AwaitableInspectors.adapt(awaitable), null);
     }
 
     /**
      */
-    protected @suspendable <R, E extends Throwable> R awaitTask(CompletionStage<R> future) throws E {
+    protected @suspendable <R, E extends Throwable> R awaitTask(CompletionStage<R> future, Duration timeout) throws E {
         // Blocking is available - resume() method is being called
     	
         // If promise is already resolved don't suspend
         // at all but rather return directly
-        FutureResult<R, E> earlyResult = getResolvedOutcome(future);
-        if (earlyResult != null) {
-            return earlyResult.done();
+        AwaitableInspector inspector = AwaitableInspectors.inspectorOf(future);
+        switch (inspector.stateOf(future)) {
+            case SUCCESS:
+                if (AsyncMethodListeners.ENABLED) {
+                    AsyncMethodListeners.awaitReady(InternalCallContext.asyncMethod(false));
+                }
+                @SuppressWarnings("unchecked")
+                R result = (R)inspector.resultOf(future);
+                return result;
+            case FAILURE:
+                if (AsyncMethodListeners.ENABLED) {
+                    AsyncMethodListeners.awaitReady(InternalCallContext.asyncMethod(false));
+                }
+                @SuppressWarnings("unchecked")
+                E error = (E)inspector.errorOf(future);
+                throw error;
+            default:
+                break;
         }
         
         AbstractAsyncMethod currentMethod = InternalCallContext.asyncMethod();
 
-        // Register (and wrap) promise we are blocking on
+        // Register promise we are blocking on
         // to support cancellation from outside
-        future = currentMethod.registerAwaitTarget(future);
+        AwaitNode<R> awaitNode = currentMethod.registerAwaitTarget(future);
+        if (null != timeout) {
+            awaitNode.expireAfter(timeout);
+        }
+        
+        if (VirtualThreadEngine.ENABLED && VirtualThreadEngine.runs(currentMethod)) {
+            return blockVirtualThread(currentMethod, awaitNode);
+        }
     	
         // Let's sleep!
         log.debug("Suspending continuation");
+        if (AsyncMethodListeners.ENABLED) {
+            AsyncMethodListeners.suspended(currentMethod);
+        }
+        Object suspendEvent = FlightRecorderEvents.ENABLED ? 
+            FlightRecorderEvents.beginSuspend(currentMethod, future) : null;
         Object outcome = Continuation.suspend(
             // Save Runnable of the suspending continuation + future
-            new SuspendParams<>(currentMethod, future)
+            awaitNode
         );
         log.debug("Continuation continued");
+        if (FlightRecorderEvents.ENABLED) {
+            FlightRecorderEvents.endSuspend(suspendEvent);
+        }
+        if (AsyncMethodListeners.ENABLED) {
+            AsyncMethodListeners.resumed(currentMethod);
+        }
 
         if (outcome instanceof FutureResult) {
             // Unwrap and return value
@@ -158,6 +302,66 @@ public class AsyncMethodExecutor {
         }
     }
     
+    /**
+     * Run the resumer of the continuation suspended on the current thread. 
+     * <p>Nested resumptions requested by the runtime while the outermost call drains, like 
+     * the subscription of the suspended method to the stage completed already, are queued 
+     * and run one after another once the current resumer returns, rather than nested in it, 
+     * so quickly completing awaits don't grow the stack. Note that the queued method is resumed 
+     * later than it would be resumed inline, after the method that caused the resumption suspends 
+     * or returns. Resumptions requested by a method body, like completing the stage awaited 
+     * by another method, are not queued since the body may block waiting for the resumed method.
+     * @return false if the resumption can't be queued (requested by a method body or the inline budget 
+     *         is exhausted), so the resumer must be passed to the scheduler instead
+     */
+    static boolean resumeInline(Runnable resumer) {
+        return TRAMPOLINE.get().run(resumer);
+    }
+    
+    /**
+     * Resume the generator method parked in yield right on the current thread, 
+     * the call returns once the method yields again or suspends otherwise.
+     */
+    static void resumeParked(Continuation continuation, Object context) {
+        INSTANCE.resume(continuation, context);
+    }
+    
+    /**
+     * Resume the generator method parked in yield as any other suspended method, 
+     * i.e. via trampoline when <code>inline</code> is true, or via its scheduler otherwise.
+     */
+    static void resumeParked(AbstractAsyncMethod method, Continuation continuation, boolean inline) {
+        ContinuationResumer<Object, Throwable> resumer = INSTANCE.new ContinuationResumer<>(continuation);
+        resumer.setup(null, null);
+        if (inline) {
+            method.createResumeHandler(resumer, true).run();
+        } else {
+            method.scheduleResume(resumer);
+        }
+    }
+    
+    private static <R, E extends Throwable> R blockVirtualThread(AbstractAsyncMethod currentMethod, AwaitNode<R> awaitNode) throws E {
+        if (AsyncMethodListeners.ENABLED) {
+            AsyncMethodListeners.suspended(currentMethod);
+        }
+        Object suspendEvent = FlightRecorderEvents.ENABLED ? 
+            FlightRecorderEvents.beginSuspend(currentMethod, awaitNode.originalAwait) : null;
+        try {
+            return awaitNode.block();
+        } catch (Throwable ex) {
+            @SuppressWarnings("unchecked")
+            E error = (E)ex;
+            throw error;
+        } finally {
+            if (FlightRecorderEvents.ENABLED) {
+                FlightRecorderEvents.endSuspend(suspendEvent);
+            }
+            if (AsyncMethodListeners.ENABLED) {
+                AsyncMethodListeners.resumed(currentMethod);
+            }
+        }
+    }
+    
     public static Scheduler currentScheduler(Scheduler explicitScheduler, Object owner, MethodHandles.Lookup ownerClassLookup) {
         return null != explicitScheduler ? 
             explicitScheduler 
@@ -165,36 +369,134 @@ public class AsyncMethodExecutor {
             SchedulerResolvers.currentScheduler(owner, ownerClassLookup);
     }
     
-    private static <R, E extends Throwable> FutureResult<R, E> getResolvedOutcome(CompletionStage<R> stage) {
-        if (stage instanceof Future) {
-            @SuppressWarnings("unchecked")
-            Future<R> future = (Future<R>)stage;
-            if (future.isDone()) {
-                try {
-                    return FutureResult.success(future.get());
-                } catch (CancellationException ex) {
-                    @SuppressWarnings("unchecked")
-                    E error = (E)ex;
-                    return FutureResult.failure(error);
-                } catch (ExecutionException ex) {
-                    @SuppressWarnings("unchecked")
-                    E error = (E)Exceptions.unrollExecutionException(ex);
-                    return FutureResult.failure(error);
-                } catch (InterruptedException ex) {
-                    throw new IllegalStateException("Completed future throws interrupted exception");
-                }
-            }
-        }
-        return null;
+    /**
+     * Bootstrap method for <code>invokedynamic</code> instruction emitted by the bytecode enhancer
+     * instead of {@link #currentScheduler(Scheduler, Object, MethodHandles.Lookup)} call.
+     * The call site type is <code>(Scheduler explicit)Scheduler</code> for static methods 
+     * and <code>(Scheduler explicit, OwnerClass owner)Scheduler</code> for instance methods.
+     */
+    public static CallSite currentSchedulerCallSite(MethodHandles.Lookup ownerClassLookup, String name, MethodType type) {
+        return SchedulerCallSites.bootstrap(ownerClassLookup, name, type, false);
     }
-
-    static class SuspendParams<R> {
-        final AbstractAsyncMethod suspendedMethod;
-        final CompletionStage<R> future;
+    
+    /**
+     * Bootstrap method for <code>invokedynamic</code> instruction emitted by the bytecode enhancer
+     * when it reads {@link net.tascalate.async.SchedulerProvider} field or getter of the owner class directly.
+     * The call site type is <code>(Scheduler explicit, Scheduler provided)Scheduler</code> for static methods 
+     * and <code>(Scheduler explicit, Scheduler provided, OwnerClass owner)Scheduler</code> for instance methods.
+     */
+    public static CallSite providedSchedulerCallSite(MethodHandles.Lookup ownerClassLookup, String name, MethodType type) {
+        return SchedulerCallSites.bootstrap(ownerClassLookup, name, type, true);
+    }
+    
+    /**
+     * Discard the cached chain of {@link net.tascalate.async.spi.SchedulerResolver}-s 
+     * loaded via the {@link ClassLoader} specified, so it will be re-loaded on next use.
+     * Necessary only when resolvers are added / removed dynamically, 
+     * chains of unloaded class loaders are discarded automatically.
+     */
+    public static void invalidateSchedulerResolvers(ClassLoader classLoader) {
+        SchedulerResolvers.invalidate(classLoader);
+    }
+    
+    /**
+     * Discard all cached chains of {@link net.tascalate.async.spi.SchedulerResolver}-s.
+     */
+    public static void invalidateSchedulerResolvers() {
+        SchedulerResolvers.invalidateAll();
+    }
+    
+    /**
+     * Discard the cached chain of {@link AwaitableInspector}-s 
+     * loaded via the {@link ClassLoader} specified, so it will be re-loaded on next use.
+     */
+    public static void invalidateAwaitableInspectors(ClassLoader classLoader) {
+        AwaitableInspectors.invalidate(classLoader);
+    }
+    
+    /**
+     * Discard all cached chains of {@link AwaitableInspector}-s.
+     */
+    public static void invalidateAwaitableInspectors() {
+        AwaitableInspectors.invalidateAll();
+    }
+    
+    /**
+     * Cancel the stage the same way as the stage awaited by the cancelled <code>@async</code> method:
+     * {@link java.util.concurrent.Future}-s directly, others via the registered {@link StageCanceller}-s
+     * or via their public <code>completeExceptionally(Throwable)</code> method.
+     * @return true if the stage was cancelled by this call
+     */
+    public static boolean cancel(CompletionStage<?> stage, boolean mayInterruptIfRunning) {
+        return StageCancellers.cancel(stage, mayInterruptIfRunning);
+    }
+    
+    /**
+     * Discard the cached chain of {@link StageCanceller}-s 
+     * loaded via the {@link ClassLoader} specified, so it will be re-loaded on next use.
+     */
+    public static void invalidateStageCancellers(ClassLoader classLoader) {
+        StageCancellers.invalidate(classLoader);
+    }
+    
+    /**
+     * Discard all cached chains of {@link StageCanceller}-s.
+     */
+    public static void invalidateStageCancellers() {
+        StageCancellers.invalidateAll();
+    }
+    
+    static final class Trampoline {
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private boolean draining;
+        private int budget;
+        // Method bodies running on the thread, and ones that were running when the drain started
+        private int bodyDepth;
+        private int drainBodyDepth;
+        
+        void enterBody() {
+            bodyDepth++;
+        }
         
-        SuspendParams(AbstractAsyncMethod suspendedMethod, CompletionStage<R> future) {
-            this.suspendedMethod = suspendedMethod;
-            this.future = future;
+        void exitBody() {
+            bodyDepth--;
+        }
+        
+        boolean run(Runnable resumer) {
+            if (draining) {
+                // Queue only from the frames of the drain loop, not from the method body it runs
+                if (bodyDepth > drainBodyDepth || budget <= 0) {
+                    return false;
+                }
+                budget--;
+                pending.addLast(resumer);
+                return true;
+            }
+            
+            draining = true;
+            budget   = INLINE_RESUME_BUDGET;
+            drainBodyDepth = bodyDepth;
+            Throwable error = null;
+            try {
+                for (Runnable next = resumer; null != next; next = pending.pollFirst()) {
+                    // Drain the rest even if one of resumers fails
+                    try {
+                        next.run();
+                    } catch (Throwable ex) {
+                        if (null == error) {
+                            error = ex;
+                        } else {
+                            error.addSuppressed(ex);
+                        }
+                    }
+                }
+            } finally {
+                draining = false;
+            }
+            if (null != error) {
+                Exceptions.sneakyThrow(error);
+            }
+            return true;
         }
     }
     
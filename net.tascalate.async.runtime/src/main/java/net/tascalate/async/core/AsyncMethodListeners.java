@@ -0,0 +1,136 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.ServiceLoader;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tascalate.async.spi.AsyncMethodListener;
+
+/**
+ * Dispatcher of {@link AsyncMethodListener} events. 
+ * <p>Every hook must be guarded with <code>if (AsyncMethodListeners.ENABLED)</code>, 
+ * so it's removed by JIT when there are no listeners.
+ */
+final class AsyncMethodListeners {
+    private static final Logger log = LoggerFactory.getLogger(AsyncMethodListeners.class);
+    
+    private static final AsyncMethodListener[] LISTENERS = loadListeners();
+    
+    static final boolean ENABLED = LISTENERS.length > 0;
+    
+    private AsyncMethodListeners() {}
+    
+    static void started(AbstractAsyncMethod method) {
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onStart(method, methodSignature, nanoTime);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    static void suspended(AbstractAsyncMethod method) {
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onSuspend(method, methodSignature, nanoTime);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    static void resumed(AbstractAsyncMethod method) {
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onResume(method, methodSignature, nanoTime);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    static void awaitReady(AbstractAsyncMethod method) {
+        if (null == method) {
+            // Await outside of async method
+            return;
+        }
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onAwaitReady(method, methodSignature, nanoTime);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    static void completed(AbstractAsyncMethod method, Throwable error) {
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onComplete(method, methodSignature, nanoTime, error);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    static void cancelled(AbstractAsyncMethod method) {
+        long nanoTime = System.nanoTime();
+        String methodSignature = method.methodSignature();
+        for (AsyncMethodListener listener : LISTENERS) {
+            try {
+                listener.onCancel(method, methodSignature, nanoTime);
+            } catch (Throwable ex) {
+                failed(listener, ex);
+            }
+        }
+    }
+    
+    private static void failed(AsyncMethodListener listener, Throwable error) {
+        log.warn("Listener " + listener + " failed", error);
+    }
+    
+    private static AsyncMethodListener[] loadListeners() {
+        ServiceLoader<AsyncMethodListener> serviceLoader = ServiceLoader.load(
+            AsyncMethodListener.class, SchedulerResolvers.classLoaderOfContext()
+        );
+        return StreamSupport.stream(serviceLoader.spliterator(), false)
+            .toArray(AsyncMethodListener[]::new);
+    }
+}
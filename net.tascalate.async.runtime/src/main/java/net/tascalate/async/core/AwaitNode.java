@@ -0,0 +1,178 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Single subscription of the suspended {@link AbstractAsyncMethod} to the awaited {@link CompletionStage}.
+ * <p>The node is passed as the suspension value of the continuation and resumes it exactly once:
+ * either when the awaited stage is completed or when the owning method's result is cancelled,
+ * whatever happens first. For timed awaits the node also resumes the method with {@link TimeoutException}
+ * when the timeout expires and then cancels the awaited stage.
+ * <p>With the virtual threads engine the node is not used as a suspension value, 
+ * but rather the thread is parked via {@link #block()} till the node is fired.
+ */
+final class AwaitNode<R> implements BiConsumer<R, Throwable> {
+    final AbstractAsyncMethod suspendedMethod;
+    final CompletionStage<R> originalAwait;
+    
+    private AsyncMethodExecutor.ContinuationResumer<? super R, Throwable> resumer;
+    private volatile Runnable resumeHandler;
+    private volatile boolean terminated;
+    private volatile int fired;
+    private Duration timeout;
+    private volatile TimerWheel.Timeout pendingTimeout;
+    // Outcome for block(), published via Parker.done
+    private R result;
+    private Throwable error;
+    
+    AwaitNode(AbstractAsyncMethod suspendedMethod, CompletionStage<R> originalAwait) {
+        this.suspendedMethod = suspendedMethod;
+        this.originalAwait   = originalAwait;
+    }
+    
+    void subscribe(AsyncMethodExecutor.ContinuationResumer<? super R, Throwable> resumer, Runnable resumeHandler) {
+        this.resumer       = resumer;
+        this.resumeHandler = resumeHandler;
+        // Re-check for race with termination requested before subscription
+        if (terminated) {
+            fire(null, CloseSignal.INSTANCE);
+        } else {
+            originalAwait.whenComplete(this);
+            if (null != timeout && fired == 0) {
+                pendingTimeout = TimerWheel.INSTANCE.schedule(this::expire, timeout);
+                // Re-check for race with completion before the timeout is published
+                if (fired != 0) {
+                    pendingTimeout.cancel();
+                }
+            }
+        }
+    }
+    
+    void expireAfter(Duration timeout) {
+        this.timeout = timeout;
+    }
+    
+    void terminate() {
+        terminated = true;
+        if (null != resumeHandler) {
+            fire(null, CloseSignal.INSTANCE);
+        }
+    }
+    
+    @Override
+    public void accept(R result, Throwable error) {
+        fire(result, error);
+    }
+    
+    /**
+     * Park the current thread until the awaited stage is completed or the method is terminated.
+     * @return the result of the awaited stage
+     * @throws Throwable the error of the awaited stage or {@link CancellationException} on termination;
+     *         the thread can't be dropped like the continuation, so it's unwound with the regular 
+     *         cancellation error rather than with the internal {@link CloseSignal}
+     */
+    R block() throws Throwable {
+        Parker parker = new Parker(Thread.currentThread());
+        subscribe(null, parker);
+        while (!parker.done) {
+            LockSupport.park(this);
+        }
+        if (null != error) {
+            Throwable ex = Exceptions.unrollCompletionException(error);
+            if (CloseSignal.INSTANCE == ex) {
+                throw new CancellationException("Async method is cancelled");
+            }
+            throw ex;
+        }
+        return result;
+    }
+    
+    private void expire() {
+        // Only the node is claimed on the timer thread, cancellation and resume are handed off
+        if (FIRED.compareAndSet(this, 0, 1)) {
+            TimerWheel.handOff(this::timedOut);
+        }
+    }
+    
+    private void timedOut() {
+        // Cancel the awaited stage first, its own completion is ignored since the node is fired
+        StageCancellers.cancel(originalAwait, true);
+        resume(null, new TimeoutException("Await timed out after " + timeout));
+    }
+    
+    private void fire(R result, Throwable error) {
+        if (FIRED.compareAndSet(this, 0, 1)) {
+            TimerWheel.Timeout currentTimeout = pendingTimeout;
+            if (null != currentTimeout) {
+                currentTimeout.cancel();
+            }
+            resume(result, error);
+        }
+    }
+    
+    private void resume(R result, Throwable error) {
+        if (null != resumer) {
+            resumer.setup(result, error);
+        } else {
+            this.result = result;
+            this.error  = error;
+        }
+        resumeHandler.run();
+    }
+    
+    static final class Parker implements Runnable {
+        private final Thread waiter;
+        volatile boolean done;
+        
+        Parker(Thread waiter) {
+            this.waiter = waiter;
+        }
+        
+        @Override
+        public void run() {
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s[awaiting-on=%s, terminated=%s, fired=%s]", 
+            getClass().getSimpleName(), originalAwait, terminated, fired != 0
+        );
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<AwaitNode> FIRED = 
+        AtomicIntegerFieldUpdater.newUpdater(AwaitNode.class, "fired");
+}
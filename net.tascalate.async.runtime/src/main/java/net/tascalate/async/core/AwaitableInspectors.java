@@ -0,0 +1,187 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.tascalate.async.spi.AwaitableInspector;
+
+class AwaitableInspectors {
+    
+    private AwaitableInspectors() {}
+    
+    /**
+     * @return the inspector for the stage, never <code>null</code>
+     */
+    static AwaitableInspector inspectorOf(CompletionStage<?> stage) {
+        // Most common case, check before registered inspectors
+        if (stage instanceof CompletableFuture) {
+            return COMPLETABLE_FUTURE_INSPECTOR;
+        }
+        for (AwaitableInspector inspector : INSPECTORS.servicesOfContext()) {
+            if (inspector.accepts(stage)) {
+                return inspector;
+            }
+        }
+        return stage instanceof Future ? FUTURE_INSPECTOR : PENDING_INSPECTOR;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <R> CompletionStage<R> adapt(Object awaitable) {
+        if (awaitable instanceof CompletionStage) {
+            return (CompletionStage<R>)awaitable;
+        }
+        if (null == awaitable) {
+            throw new NullPointerException("Awaitable must not be null");
+        }
+        for (AwaitableInspector inspector : INSPECTORS.servicesOfContext()) {
+            CompletionStage<?> stage = inspector.adapt(awaitable);
+            if (null != stage) {
+                return (CompletionStage<R>)stage;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported awaitable: " + awaitable.getClass().getName());
+    }
+    
+    static void invalidate(ClassLoader classLoader) {
+        INSPECTORS.invalidate(classLoader);
+    }
+    
+    static void invalidateAll() {
+        INSPECTORS.invalidateAll();
+    }
+    
+    static abstract class BuiltinInspector implements AwaitableInspector {
+        @Override
+        public int priority() {
+            return Integer.MIN_VALUE;
+        }
+        
+        @Override
+        public boolean accepts(CompletionStage<?> stage) {
+            return true;
+        }
+        
+        @Override
+        public String toString() {
+            return getClass().getSimpleName();
+        }
+    }
+    
+    static final class CompletableFutureInspector extends BuiltinInspector {
+        @Override
+        public State stateOf(CompletionStage<?> stage) {
+            CompletableFuture<?> future = (CompletableFuture<?>)stage;
+            if (!future.isDone()) {
+                return State.PENDING;
+            }
+            return future.isCompletedExceptionally() ? State.FAILURE : State.SUCCESS;
+        }
+        
+        @Override
+        public Object resultOf(CompletionStage<?> stage) {
+            return ((CompletableFuture<?>)stage).getNow(null);
+        }
+        
+        @Override
+        public Throwable errorOf(CompletionStage<?> stage) {
+            return FUTURE_INSPECTOR.errorOf(stage);
+        }
+    }
+    
+    static final class FutureInspector extends BuiltinInspector {
+        @Override
+        public State stateOf(CompletionStage<?> stage) {
+            Future<?> future = (Future<?>)stage;
+            if (!future.isDone()) {
+                return State.PENDING;
+            }
+            if (future.isCancelled()) {
+                return State.FAILURE;
+            }
+            try {
+                future.get();
+                return State.SUCCESS;
+            } catch (CancellationException | ExecutionException ex) {
+                return State.FAILURE;
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException("Completed future throws interrupted exception");
+            }
+        }
+        
+        @Override
+        public Object resultOf(CompletionStage<?> stage) {
+            try {
+                return ((Future<?>)stage).get();
+            } catch (CancellationException | ExecutionException ex) {
+                throw new IllegalStateException("Future is completed exceptionally", ex);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException("Completed future throws interrupted exception");
+            }
+        }
+        
+        @Override
+        public Throwable errorOf(CompletionStage<?> stage) {
+            try {
+                ((Future<?>)stage).get();
+                throw new IllegalStateException("Future is completed successfully");
+            } catch (CancellationException ex) {
+                return ex;
+            } catch (ExecutionException ex) {
+                return Exceptions.unrollExecutionException(ex);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException("Completed future throws interrupted exception");
+            }
+        }
+    }
+    
+    static final class PendingInspector extends BuiltinInspector {
+        @Override
+        public State stateOf(CompletionStage<?> stage) {
+            return State.PENDING;
+        }
+        
+        @Override
+        public Object resultOf(CompletionStage<?> stage) {
+            throw new IllegalStateException("Stage is not completed");
+        }
+        
+        @Override
+        public Throwable errorOf(CompletionStage<?> stage) {
+            throw new IllegalStateException("Stage is not completed");
+        }
+    }
+    
+    private static final AwaitableInspector COMPLETABLE_FUTURE_INSPECTOR = new CompletableFutureInspector();
+    private static final AwaitableInspector FUTURE_INSPECTOR = new FutureInspector();
+    private static final AwaitableInspector PENDING_INSPECTOR = new PendingInspector();
+    
+    private static final ServiceChain<AwaitableInspector> INSPECTORS = 
+        new ServiceChain<>(AwaitableInspector.class, AwaitableInspector::priority, AwaitableInspector[]::new);
+}
@@ -0,0 +1,147 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
+
+import net.tascalate.async.IndexedValue;
+
+/**
+ * Single stage that is awaited instead of N stages by <code>awaitAll</code> / <code>awaitAny</code>, 
+ * so the method is suspended and resumed exactly once.
+ * <p>Every awaited stage is subscribed with the lightweight slot that reports its index; 
+ * cancellation of the node (i.e. of the awaiting method) cancels all awaited stages.
+ */
+abstract class CountdownNode<R> extends CompletableFuture<R> {
+    final CompletionStage<?>[] stages;
+    
+    CountdownNode(CompletionStage<?>[] stages) {
+        this.stages = stages;
+    }
+    
+    static <T> CountdownNode<List<T>> all(CompletionStage<?>[] stages) {
+        return new All<T>(stages).subscribe();
+    }
+    
+    static <T> CountdownNode<IndexedValue<T>> any(CompletionStage<?>[] stages) {
+        return new Any<T>(stages).subscribe();
+    }
+    
+    abstract void onComplete(int index, Object value, Throwable error);
+    
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (super.cancel(mayInterruptIfRunning)) {
+            for (CompletionStage<?> stage : stages) {
+                StageCancellers.cancel(stage, mayInterruptIfRunning);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+    
+    final CountdownNode<R> subscribe() {
+        for (int i = 0; i < stages.length && !isDone(); i++) {
+            stages[i].whenComplete(new Slot(this, i));
+        }
+        return this;
+    }
+    
+    static final class Slot implements BiConsumer<Object, Throwable> {
+        private final CountdownNode<?> node;
+        private final int index;
+        
+        Slot(CountdownNode<?> node, int index) {
+            this.node  = node;
+            this.index = index;
+        }
+        
+        @Override
+        public void accept(Object value, Throwable error) {
+            node.onComplete(index, value, null == error ? null : Exceptions.unrollCompletionException(error));
+        }
+    }
+    
+    /**
+     * Completed with all results in order of stages, or with the first error.
+     */
+    static final class All<T> extends CountdownNode<List<T>> {
+        private final Object[] results;
+        private volatile int remaining;
+        
+        All(CompletionStage<?>[] stages) {
+            super(stages);
+            this.results   = new Object[stages.length];
+            this.remaining = stages.length;
+        }
+        
+        @Override
+        void onComplete(int index, Object value, Throwable error) {
+            if (null != error) {
+                completeExceptionally(error);
+            } else {
+                results[index] = value;
+                // Decrement publishes the result to the last completer
+                if (REMAINING.decrementAndGet(this) == 0) {
+                    @SuppressWarnings("unchecked")
+                    List<T> list = (List<T>)Collections.unmodifiableList(Arrays.asList(results));
+                    complete(list);
+                }
+            }
+        }
+        
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<All> REMAINING = 
+            AtomicIntegerFieldUpdater.newUpdater(All.class, "remaining");
+    }
+    
+    /**
+     * Completed with the value of the first completed stage, or with its error.
+     */
+    static final class Any<T> extends CountdownNode<IndexedValue<T>> {
+        
+        Any(CompletionStage<?>[] stages) {
+            super(stages);
+        }
+        
+        @Override
+        void onComplete(int index, Object value, Throwable error) {
+            if (null != error) {
+                completeExceptionally(error);
+            } else if (!isDone()) {
+                @SuppressWarnings("unchecked")
+                T result = (T)value;
+                complete(new IndexedValue<>(index, result));
+            }
+        }
+    }
+}
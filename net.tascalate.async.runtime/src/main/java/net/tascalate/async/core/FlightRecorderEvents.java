@@ -0,0 +1,70 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Hooks for JDK Flight Recorder events. 
+ * <p>This class is a no-op stub for Java 8, the actual implementation is provided 
+ * in the multi-release section of the runtime for Java 11 and above.
+ * <p>Every hook must be guarded with <code>if (FlightRecorderEvents.ENABLED)</code>. 
+ * Tokens returned by <code>begin*</code> methods are opaque and may be <code>null</code>.
+ */
+final class FlightRecorderEvents {
+    // Not a compile-time constant, so it's not inlined into callers
+    static final boolean ENABLED = isAvailable();
+    
+    private FlightRecorderEvents() {}
+    
+    static Object beginSuspend(AbstractAsyncMethod method, CompletionStage<?> awaited) {
+        return null;
+    }
+    
+    static void endSuspend(Object token) {
+    }
+    
+    static Object beginGeneratorYield(AbstractAsyncMethod method) {
+        return null;
+    }
+    
+    static void endGeneratorYield(Object token) {
+    }
+    
+    static Object beginGeneratorNext(AbstractAsyncMethod method) {
+        return null;
+    }
+    
+    static void endGeneratorNext(Object token) {
+    }
+    
+    static Runnable dispatching(AbstractAsyncMethod method, Runnable resumer) {
+        return resumer;
+    }
+    
+    private static boolean isAvailable() {
+        return false;
+    }
+}
@@ -46,28 +46,30 @@ public class InternalCallContext {
         return asyncMethod(true);
     }
     
-    private static AbstractAsyncMethod asyncMethod(boolean mustBeAvailable) {
+    static AbstractAsyncMethod asyncMethod(boolean mustBeAvailable) {
+        // Continuation is checked first: the method of the continuations engine 
+        // may be started synchronously on the thread of the virtual threads engine method
         StackRecorder stackRecorder = StackRecorder.get();
-        Runnable result;
-        if (null == stackRecorder) {
-            if (mustBeAvailable) {
-                throw new InvalidCallContextException(
-                    "Continuation was continued incorrectly - are your classes instrumented for javaflow?"
-                );
-            } else {
-                result = null;
-            }
-        } else {
-            result = stackRecorder.getRunnable();
-        }
+        Runnable result = null == stackRecorder ? null : stackRecorder.getRunnable();
         if (result instanceof AbstractAsyncMethod) {
             return (AbstractAsyncMethod)result;
-        } else if (mustBeAvailable) {
+        }
+        if (VirtualThreadEngine.ENABLED) {
+            AbstractAsyncMethod currentMethod = VirtualThreadEngine.currentMethod();
+            if (null != currentMethod) {
+                return currentMethod;
+            }
+        }
+        if (!mustBeAvailable) {
+            return null;
+        } else if (null == stackRecorder) {
             throw new InvalidCallContextException(
-                "Current runnable is not " + AbstractAsyncMethod.class.getName() + " - are your classes instrumented for javaflow?"
+                "Continuation was continued incorrectly - are your classes instrumented for javaflow?"
             );
         } else {
-            return null;
+            throw new InvalidCallContextException(
+                "Current runnable is not " + AbstractAsyncMethod.class.getName() + " - are your classes instrumented for javaflow?"
+            );
         }
     }
 }
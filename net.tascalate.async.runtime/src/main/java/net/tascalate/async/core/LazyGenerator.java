@@ -26,6 +26,9 @@ package net.tascalate.async.core;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.apache.commons.javaflow.api.Continuation;
 
 import net.tascalate.async.AsyncGenerator;
 import net.tascalate.async.InteractiveSequence;
@@ -33,17 +36,50 @@ import net.tascalate.async.Sequence;
 import net.tascalate.async.YieldReply;
 import net.tascalate.async.suspendable;
 
+/**
+ * Handoff between the consumer and the producer (the generator method).
+ * <p>The producer waiting for the reply of the consumer doesn't await a future but parks 
+ * its continuation in the generator, the reply of the consumer is passed via fields. 
+ * When both run on the same thread the consumer resumes the parked producer right from its 
+ * {@link #next()}, and the producer returns the control back on the next yield, so the consumer 
+ * proceeds without suspension and without allocating its own lock; a single stage yielded is 
+ * passed via the reusable delegate. Otherwise the producer is resumed via its scheduler and 
+ * the consumer lock future is armed.
+ * <p>With {@link #prefetch(int)} the producer is not locked after yield but runs ahead of the consumer 
+ * till the bounded buffer is full; the consumer takes values from the buffer and suspends only when 
+ * it's empty.
+ */
 class LazyGenerator<T> implements AsyncGenerator<T> {
     private final AsyncGeneratorMethod<?> owner;
+    // Scheduler allows to resume the parked producer right on the consumer's thread
+    private final boolean directHandoff;
+    private final Runnable directResumer = this::resumeDirectly;
 	
-    private CompletableFuture<YieldReply<T>> producerLock;
-    private CompletableFuture<?> consumerLock;
+    // null while the producer runs, AWAITING_REPLY when it yielded or not started yet, REPLIED when 
+    // the consumer replied before the producer is parked, or either parked continuation or lock future 
+    // of the producer
+    private volatile Object producerLock = AWAITING_REPLY;
+    // Written by the consumer before the producer lock is released
+    private T replyResult;
+    private Throwable replyError;
+    private Object replyParam;
+    // Written by the producer before it's parked
+    private Thread parkThread;
+    private Runnable parkedResumer;
+    private Continuation resumedContinuation;
+    // null while the consumer waits for the producer, RELEASED when the producer yielded, 
+    // or the future awaited by the consumer suspended
+    private volatile Object consumerLock = RELEASED;
     private CompletionStage<T> latestFuture;
 
     private Sequence<? extends CompletionStage<T>> currentDelegate = Sequence.empty();
+    private final SingleStage<T> singleStage = new SingleStage<>();
+    // Not null in run-ahead mode
+    private volatile Prefetch prefetch;
     
     LazyGenerator(AsyncGeneratorMethod<T> owner) {
     	this.owner = owner;
+    	this.directHandoff = owner.resumesInline();
     }
 
     @Override
@@ -55,24 +91,30 @@ class LazyGenerator<T> implements AsyncGenerator<T> {
     public CompletionStage<T> next(Object param) {
         // Loop to replace tail recursion - BEGIN
         while (true) {
+            Prefetch ahead = prefetch;
+            if (null != ahead) {
+                // Values buffered are available even when producer is done
+                return nextPrefetched(ahead, param);
+            }
+            
             if (owner.checkDone()) {
                 return null;
             }
             
             // Await previously returned result, if any
-            FutureResult<T> latestResult = FutureResult.of(latestFuture);
+            CompletionStage<T> latest = latestFuture;
+            T latestResult = null;
+            Throwable latestError = null;
+            if (null != latest) {
+                try {
+                    latestResult = AsyncMethodExecutor.await(latest);
+                } catch (Exception ex) {
+                    latestError = ex;
+                }
+            }
             
             // Could we advance further current delegate?
-            if (NO_PARAM == param) {
-                latestFuture = currentDelegate.next();
-            } else if (currentDelegate instanceof InteractiveSequence) {
-                InteractiveSequence<? extends CompletionStage<T>> typedDelegate 
-                    = (InteractiveSequence<? extends CompletionStage<T>>)currentDelegate;
-                latestFuture = typedDelegate.next(param);
-            } else {
-                // TODO: does it make sense to throw an error here?
-                latestFuture = currentDelegate.next();
-            }
+            latestFuture = advanceDelegate(param);
                 
             if (null != latestFuture) {
                 // Yes, we can
@@ -81,39 +123,168 @@ class LazyGenerator<T> implements AsyncGenerator<T> {
     
             // No, need to generate new promise;
     
+            Object nextEvent = FlightRecorderEvents.ENABLED ? 
+                FlightRecorderEvents.beginGeneratorNext(owner) : null;
+            consumerLock = null;
             // Let produce some value (resumes producer)
-            latestResult.releaseLock(producerLock, param);
-            // Wait till value is ready (suspends consumer)
+            releaseProducerLock(latestResult, latestError, param);
+            // Wait till value is ready (suspends consumer unless yielded already)
             acquireConsumerLock();
-            consumerLock = new CompletableFuture<>();
+            if (FlightRecorderEvents.ENABLED) {
+                FlightRecorderEvents.endGeneratorNext(nextEvent);
+            }
             // Check everything once again after wait
         }
         // Loop to replace tail recursion - END
         // The actual tail recursive call is:
         //return next(param);
     }
+    
+    private @suspendable CompletionStage<T> nextPrefetched(Prefetch ahead, Object param) {
+        while (true) {
+            CompletionStage<T> result = advanceDelegate(param);
+            if (null != result) {
+                return result;
+            }
+            // Read before polling, so all values yielded are in the buffer when producer is done
+            boolean done = owner.future.isDone();
+            Object entry = ahead.poll();
+            if (null != entry) {
+                ahead.wakeupProducer();
+                if (entry instanceof Sequence) {
+                    @SuppressWarnings("unchecked")
+                    Sequence<? extends CompletionStage<T>> nextDelegate = (Sequence<? extends CompletionStage<T>>)entry;
+                    currentDelegate = nextDelegate;
+                    continue;
+                } else {
+                    @SuppressWarnings("unchecked")
+                    CompletionStage<T> nextFuture = (CompletionStage<T>)entry;
+                    return nextFuture;
+                }
+            }
+            if (done) {
+                // Re-throws synchronous error of generator method, if any
+                owner.checkDone();
+                return null;
+            }
+            
+            Object nextEvent = FlightRecorderEvents.ENABLED ? 
+                FlightRecorderEvents.beginGeneratorNext(owner) : null;
+            consumerLock = null;
+            // If not started yet or switched to run-ahead mode while locked in yield
+            releaseProducerLock(null, null, param);
+            // Re-check after arming - producer might yield before
+            if (ahead.isEmpty() && !owner.future.isDone()) {
+                acquireConsumerLock();
+            }
+            if (FlightRecorderEvents.ENABLED) {
+                FlightRecorderEvents.endGeneratorNext(nextEvent);
+            }
+        }
+    }
+    
+    private @suspendable CompletionStage<T> advanceDelegate(Object param) {
+        if (NO_PARAM == param) {
+            return currentDelegate.next();
+        } else if (currentDelegate instanceof InteractiveSequence) {
+            InteractiveSequence<? extends CompletionStage<T>> typedDelegate 
+                = (InteractiveSequence<? extends CompletionStage<T>>)currentDelegate;
+            return typedDelegate.next(param);
+        } else {
+            // TODO: does it make sense to throw an error here?
+            return currentDelegate.next();
+        }
+    }
+    
+    @Override
+    public AsyncGenerator<T> prefetch(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Prefetch size must be positive: " + size);
+        }
+        if (!PREFETCH.compareAndSet(this, null, new Prefetch(size))) {
+            throw new IllegalStateException("Prefetch is set already for " + this);
+        }
+        return this;
+    }
 
     @Override
     public void close() {
         owner.future.cancel(true);
+        Object currentLock = producerLock;
+        if (currentLock instanceof Continuation && PRODUCER_LOCK.compareAndSet(this, currentLock, null)) {
+            // Producer parked in yield
+            ((Continuation)currentLock).terminate();
+        }
         currentDelegate.close();
+        Prefetch ahead = prefetch;
+        if (null != ahead) {
+            ahead.clear();
+        }
         end(null);
+        currentDelegate = Sequence.empty();
     }
 
     final @suspendable YieldReply<T> produce(Sequence<? extends CompletionStage<T>> pendingValues) {
+        Prefetch ahead = prefetch;
+        if (null != ahead) {
+            return produceAhead(ahead, pendingValues);
+        }
         currentDelegate = pendingValues;
         // Re-set producerLock
         // It's important to reset it before unlocking consumer!
-        producerLock = new CompletableFuture<>();
+        producerLock = AWAITING_REPLY;
         // Allow to consume new promise(s) yielded
         // Unlock consumer, if locked (initially it's unlocked)
+        Object yieldEvent = FlightRecorderEvents.ENABLED ? 
+            FlightRecorderEvents.beginGeneratorYield(owner) : null;
         releaseConsumerLock();
-        return acquireProducerLock();
+        YieldReply<T> reply = acquireProducerLock();
+        if (FlightRecorderEvents.ENABLED) {
+            FlightRecorderEvents.endGeneratorYield(yieldEvent);
+        }
+        return reply;
+    }
+    
+    final @suspendable YieldReply<T> produce(CompletionStage<T> pendingValue) {
+        Prefetch ahead = prefetch;
+        if (null != ahead) {
+            return produceAhead(ahead, pendingValue);
+        }
+        // Consumer exhausted the previous delegate before the producer is resumed, so reuse is safe
+        singleStage.stage = pendingValue;
+        return produce(singleStage);
+    }
+
+    private @suspendable YieldReply<T> produceAhead(Prefetch ahead, Object entry) {
+        Object yieldEvent = FlightRecorderEvents.ENABLED ? 
+            FlightRecorderEvents.beginGeneratorYield(owner) : null;
+        while (true) {
+            boolean closed = owner.future.isDone();
+            if (!closed && (null == entry || ahead.offer(entry))) {
+                break;
+            }
+            // Buffer is full - wait till consumer takes a value;
+            // await of the closed generator terminates it
+            CompletableFuture<Void> signal = ahead.armProducerWakeup();
+            if (closed || ahead.isFull()) {
+                AsyncMethodExecutor.await(signal);
+            }
+        }
+        if (RELEASED != consumerLock) {
+            releaseConsumerLock();
+        }
+        if (FlightRecorderEvents.ENABLED) {
+            FlightRecorderEvents.endGeneratorYield(yieldEvent);
+        }
+        // Consumer doesn't reply to values buffered
+        @SuppressWarnings("unchecked")
+        YieldReply<T> reply = (YieldReply<T>)EMPTY_REPLY;
+        return reply;
     }
 
     final @suspendable void begin() {
-        // Start with locked producer and unlocked consumer
-        producerLock = new CompletableFuture<>();
+        // Start with locked producer and unlocked consumer, 
+        // the consumer might reply already if the producer is started asynchronously 
         acquireProducerLock();
     }
 
@@ -125,95 +296,246 @@ class LazyGenerator<T> implements AsyncGenerator<T> {
         } else {
             owner.failure(ex);
         }
-        currentDelegate = Sequence.empty();
+        if (null == prefetch) {
+            // Otherwise owned by the consumer running concurrently
+            currentDelegate = Sequence.empty();
+        }
         releaseConsumerLock();
     }
 
     private @suspendable YieldReply<T> acquireProducerLock() {
-        CompletableFuture<YieldReply<T>> currentLock = producerLock;
-        if (!currentLock.isDone()) {
-            return AsyncMethodExecutor.await(currentLock);
+        if (REPLIED != producerLock) {
+            if (VirtualThreadEngine.ENABLED && VirtualThreadEngine.runs(owner)) {
+                // No continuation to park, the virtual thread is blocked on the lock
+                CompletableFuture<Void> currentLock = new CompletableFuture<>();
+                if (PRODUCER_LOCK.compareAndSet(this, AWAITING_REPLY, currentLock)) {
+                    AsyncMethodExecutor.await(currentLock);
+                }
+            } else {
+                if (AsyncMethodListeners.ENABLED) {
+                    AsyncMethodListeners.suspended(owner);
+                }
+                // Parked by the executor, see park(Continuation) 
+                Continuation.suspend(this);
+                if (AsyncMethodListeners.ENABLED) {
+                    AsyncMethodListeners.resumed(owner);
+                }
+            }
+        }
+        // Otherwise the consumer replied before the producer is locked
+        producerLock = null;
+        
+        T result = replyResult;
+        Throwable error = replyError;
+        Object param = replyParam;
+        replyResult = null;
+        replyError  = null;
+        replyParam  = null;
+        if (null != error) {
+            Exceptions.sneakyThrow(error);
+        }
+        return new YieldReply<>(result, param);
+    }
+    
+    /**
+     * Called by the executor on the producer's thread once the producer's continuation is suspended in yield.
+     */
+    final void park(Continuation continuation) {
+        parkThread = Thread.currentThread();
+        parkedResumer = directHandoff ? owner.scheduler().contextualize(directResumer) : null;
+        if (!PRODUCER_LOCK.compareAndSet(this, AWAITING_REPLY, continuation)) {
+            // Consumer replied concurrently
+            AsyncMethodExecutor.resumeParked(owner, continuation, true);
+        } else if (owner.future.isDone() && PRODUCER_LOCK.compareAndSet(this, continuation, null)) {
+            // Generator is closed concurrently
+            continuation.terminate();
+        }
+    }
+    
+    private void releaseProducerLock(T result, Throwable error, Object param) {
+        Object currentLock = producerLock;
+        if (null == currentLock || REPLIED == currentLock) {
+            // Producer doesn't wait for the reply
+            return;
+        }
+        replyResult = result;
+        replyError  = error;
+        replyParam  = param;
+        while (true) {
+            if (AWAITING_REPLY == currentLock) {
+                if (PRODUCER_LOCK.compareAndSet(this, currentLock, REPLIED)) {
+                    // Producer takes the reply once it tries to lock
+                    return;
+                }
+            } else if (PRODUCER_LOCK.compareAndSet(this, currentLock, null)) {
+                if (currentLock instanceof Continuation) {
+                    resumeProducer((Continuation)currentLock);
+                } else {
+                    ((CompletableFuture<?>)currentLock).complete(null);
+                }
+                return;
+            }
+            currentLock = producerLock;
+        }
+    }
+    
+    private void resumeProducer(Continuation continuation) {
+        if (null != parkedResumer && Thread.currentThread() == parkThread) {
+            // Swap control - the producer runs on this thread till it yields the next value
+            resumedContinuation = continuation;
+            parkedResumer.run();
         } else {
-            // Never returns null while isDone() == true
-            return currentLock.getNow(null);
+            AsyncMethodExecutor.resumeParked(owner, continuation, false);
         }
     }
     
+    private void resumeDirectly() {
+        Continuation continuation = resumedContinuation;
+        resumedContinuation = null;
+        AsyncMethodExecutor.resumeParked(continuation, this);
+    }
+    
     private @suspendable void acquireConsumerLock() {
-        // When next() is called for first time
-        // then consumerLock is NULL
-        CompletableFuture<?> currentLock = consumerLock;
-    	if (null != currentLock) {
-    	    if (!currentLock.isDone()) {
-                AsyncMethodExecutor.await(currentLock);
-    	    }
-            // Order matters - set to null only after wait      
-            consumerLock = null;
-    	}
+        if (RELEASED == consumerLock) {
+            // Producer yielded synchronously
+            return;
+        }
+        CompletableFuture<Void> currentLock = new CompletableFuture<>();
+        // Re-check - producer may yield concurrently
+        if (CONSUMER_LOCK.compareAndSet(this, null, currentLock)) {
+            AsyncMethodExecutor.await(currentLock);
+        }
     }
     
     private void releaseConsumerLock() {
-        final CompletableFuture<?> currentLock = consumerLock;
-        if (null != currentLock) {
-            consumerLock = null;
-            currentLock.complete(null);
+        Object currentLock = CONSUMER_LOCK.getAndSet(this, RELEASED);
+        if (currentLock instanceof CompletableFuture) {
+            ((CompletableFuture<?>)currentLock).complete(null);
         }
     }
     
     @Override
     public String toString() {
         return String.format(
-            "<generator{%s}>[consumer-lock=%s, producer-lock=%s, current-delegate=%s]", 
-            getClass().getSimpleName(), consumerLock, producerLock, currentDelegate
+            "<generator{%s}>[consumer-lock=%s, producer-lock=%s, current-delegate=%s, prefetch=%s]", 
+            getClass().getSimpleName(), consumerLock, producerLock, currentDelegate, prefetch
         );
     }
     
-    abstract static class FutureResult<T> {
-        static class Success<T> extends FutureResult<T> {
-            final T result;
-            
-            Success(T result) { 
-                this.result = result; 
-            }
-            
-            @Override
-            void releaseLock(CompletableFuture<YieldReply<T>> lock, Object param) {
-                lock.complete(new YieldReply<>(result, param));
+    static final class SingleStage<T> implements Sequence<CompletionStage<T>> {
+        CompletionStage<T> stage;
+        
+        @Override
+        public CompletionStage<T> next() {
+            CompletionStage<T> result = stage;
+            stage = null;
+            return result;
+        }
+        
+        @Override
+        public void close() {
+            stage = null;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s[stage=%s]", getClass().getSimpleName(), stage);
+        }
+    }
+    
+    /**
+     * Bounded single-producer / single-consumer ring of the yielded stages and sequences.
+     */
+    static final class Prefetch {
+        private final Object[] entries;
+        // Written only by the producer and only by the consumer respectively
+        private volatile long produced;
+        private volatile long consumed;
+        // Producer wake-up, not null only while the producer is about to wait or waiting
+        private volatile CompletableFuture<Void> producerWakeup;
+        
+        Prefetch(int size) {
+            this.entries = new Object[size];
+        }
+        
+        boolean offer(Object entry) {
+            long index = produced;
+            if (index - consumed >= entries.length) {
+                return false;
             }
+            entries[(int)(index % entries.length)] = entry;
+            // Publishes the entry
+            produced = index + 1;
+            return true;
         }
         
-        static class Failure<T> extends FutureResult<T> {
-            final Throwable error;
-            
-            Failure(Throwable error) { 
-                this.error  = error; 
+        Object poll() {
+            long index = consumed;
+            if (index >= produced) {
+                return null;
             }
-            
-            @Override
-            void releaseLock(CompletableFuture<YieldReply<T>> lock, Object param) {
-                lock.completeExceptionally(error);
+            int slot = (int)(index % entries.length);
+            Object entry = entries[slot];
+            entries[slot] = null;
+            consumed = index + 1;
+            return entry;
+        }
+        
+        boolean isEmpty() {
+            return consumed >= produced;
+        }
+        
+        boolean isFull() {
+            return produced - consumed >= entries.length;
+        }
+        
+        CompletableFuture<Void> armProducerWakeup() {
+            CompletableFuture<Void> signal = new CompletableFuture<>();
+            producerWakeup = signal;
+            return signal;
+        }
+        
+        void wakeupProducer() {
+            CompletableFuture<Void> signal = producerWakeup;
+            if (null != signal && PRODUCER_WAKEUP.compareAndSet(this, signal, null)) {
+                signal.complete(null);
             }
         }
         
-        @suspendable 
-        static <T> FutureResult<T> of(CompletionStage<? extends T> future) {
-            if (null == future) {
-                @SuppressWarnings("unchecked")
-                FutureResult<T> empty = (FutureResult<T>)EMPTY;
-                return empty;
-            } else {
-                try {
-                    return new Success<T>(AsyncMethodExecutor.await(future));
-                } catch (Exception ex) {
-                    return new Failure<T>(ex);
+        void clear() {
+            Object entry;
+            while (null != (entry = poll())) {
+                if (entry instanceof Sequence) {
+                    ((Sequence<?>)entry).close();
                 }
             }
         }
         
-        abstract void releaseLock(CompletableFuture<YieldReply<T>> lock, Object param);
+        @Override
+        public String toString() {
+            return String.format("%s[size=%s, buffered=%s]", getClass().getSimpleName(), entries.length, produced - consumed);
+        }
         
-        private static final FutureResult<Object> EMPTY = new Success<Object>(null);
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Prefetch, CompletableFuture> PRODUCER_WAKEUP =
+            AtomicReferenceFieldUpdater.newUpdater(Prefetch.class, CompletableFuture.class, "producerWakeup");
     }
     
     private static final Object NO_PARAM = new Object();
+    private static final YieldReply<Object> EMPTY_REPLY = new YieldReply<>(null, null);
+    private static final Object RELEASED = new Object();
+    private static final Object AWAITING_REPLY = new Object();
+    private static final Object REPLIED = new Object();
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LazyGenerator, Object> PRODUCER_LOCK =
+        AtomicReferenceFieldUpdater.newUpdater(LazyGenerator.class, Object.class, "producerLock");
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LazyGenerator, Object> CONSUMER_LOCK =
+        AtomicReferenceFieldUpdater.newUpdater(LazyGenerator.class, Object.class, "consumerLock");
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LazyGenerator, Prefetch> PREFETCH =
+        AtomicReferenceFieldUpdater.newUpdater(LazyGenerator.class, Prefetch.class, "prefetch");
 }
@@ -0,0 +1,250 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tascalate.async.Scheduler;
+import net.tascalate.async.spi.SchedulerBinding;
+import net.tascalate.async.spi.SchedulerResolver;
+
+/**
+ * Invocation sites of {@link Scheduler} resolution emitted by the bytecode enhancer
+ * into every <code>@async</code> method.
+ * <p>Call site type is either <code>(Scheduler explicit)Scheduler</code> for static methods or
+ * <code>(Scheduler explicit, OwnerClass owner)Scheduler</code> for instance methods.
+ * Sites of classes where the bytecode enhancer reads {@link net.tascalate.async.SchedulerProvider} 
+ * member directly accept the value read as the second argument, i.e. 
+ * <code>(Scheduler explicit, Scheduler provided)Scheduler</code> and 
+ * <code>(Scheduler explicit, Scheduler provided, OwnerClass owner)Scheduler</code>; 
+ * it's used instead of resolvers that read providers reflectively.
+ * The chain of {@link SchedulerResolver}-s is bound once per site via
+ * {@link SchedulerResolver#bind(MethodHandles.Lookup)}; the site is re-bound when either
+ * registered resolvers are invalidated or any binding-specific {@link SwitchPoint} is invalidated.
+ * Invocations from the thread with a different context class loader fall back to
+ * the regular {@link SchedulerResolvers#currentScheduler(Object, MethodHandles.Lookup)}.
+ */
+final class SchedulerCallSites {
+    private SchedulerCallSites() {}
+
+    static CallSite bootstrap(MethodHandles.Lookup ownerClassLookup, String name, MethodType type, boolean isProviderRead) {
+        int arity = type.parameterCount();
+        int schedulerArgs = isProviderRead ? 2 : 1;
+        if (arity < schedulerArgs || 
+            arity > schedulerArgs + 1 || 
+            type.parameterType(0) != Scheduler.class || 
+            type.parameterType(schedulerArgs - 1) != Scheduler.class ||
+            type.returnType() != Scheduler.class) {
+            throw new IllegalArgumentException("Unsupported scheduler call site type: " + type);
+        }
+        SchedulerCallSite result = new SchedulerCallSite(ownerClassLookup, type, isProviderRead);
+        result.setTarget(result.bind());
+        return result;
+    }
+
+    static final class SchedulerCallSite extends MutableCallSite {
+        private final MethodHandles.Lookup ownerClassLookup;
+        private final boolean isProviderRead;
+
+        SchedulerCallSite(MethodHandles.Lookup ownerClassLookup, MethodType type, boolean isProviderRead) {
+            super(type);
+            this.ownerClassLookup = ownerClassLookup;
+            this.isProviderRead = isProviderRead;
+        }
+
+        MethodHandle bind() {
+            boolean isStatic = type().parameterCount() == (isProviderRead ? 2 : 1);
+            // Order matters - obtain switch point before resolvers,
+            // so concurrent invalidation always causes re-binding
+            SwitchPoint resolversSwitchPoint = SchedulerResolvers.bindingsSwitchPoint();
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            ClassLoader serviceClassLoader = SchedulerResolvers.getServiceClassLoader(ownerClassLookup.lookupClass());
+            SchedulerResolver[] resolvers = SchedulerResolvers.getResolvers(serviceClassLoader);
+
+            List<SwitchPoint> switchPoints = new ArrayList<>();
+            switchPoints.add(resolversSwitchPoint);
+
+            List<SchedulerBinding> bindings = new ArrayList<>(resolvers.length);
+            for (SchedulerResolver resolver : resolvers) {
+                if (isProviderRead && resolver.readsSchedulerProviders()) {
+                    // Provider is already read by the enhanced code, no reflection necessary
+                    bindings.add(null);
+                    continue;
+                }
+                SchedulerBinding binding = resolver.bind(ownerClassLookup);
+                switchPoints.addAll(binding.switchPoints());
+                if (binding.isNone()) {
+                    continue;
+                }
+                bindings.add(binding);
+                if (binding.isConstant()) {
+                    // Resolvers with lower priority are never consulted
+                    break;
+                }
+            }
+
+            // (Scheduler provided, Object owner)Scheduler
+            MethodHandle chain = DEFAULT_SCHEDULER;
+            for (int i = bindings.size() - 1; i >= 0; i--) {
+                SchedulerBinding binding = bindings.get(i);
+                if (null == binding) {
+                    chain = firstNonNull(RETURN_FIRST, chain);
+                } else {
+                    MethodHandle resolver = MethodHandles.dropArguments(binding.resolver(), 0, Scheduler.class);
+                    chain = binding.isConstant() ? resolver : firstNonNull(resolver, chain);
+                }
+            }
+
+            // (Scheduler explicit, Scheduler provided, Object owner)Scheduler
+            MethodHandle bound = MethodHandles.guardWithTest(
+                IS_FIRST_NON_NULL_OF_3, RETURN_FIRST_OF_3, MethodHandles.dropArguments(chain, 0, Scheduler.class)
+            );
+            MethodHandle generic = MethodHandles.insertArguments(
+                CURRENT_SCHEDULER, 3, ownerClassLookup, isProviderRead
+            );
+            if (isStatic) {
+                bound   = MethodHandles.insertArguments(bound, 2, (Object)null);
+                generic = MethodHandles.insertArguments(generic, 2, (Object)null);
+            }
+            if (!isProviderRead) {
+                bound   = MethodHandles.insertArguments(bound, 1, (Object)null);
+                generic = MethodHandles.insertArguments(generic, 1, (Object)null);
+            }
+            bound   = bound.asType(type());
+            generic = generic.asType(type());
+
+            MethodHandle result = MethodHandles.guardWithTest(
+                MethodHandles.dropArguments(
+                    MethodHandles.insertArguments(HAS_CONTEXT_CLASS_LOADER, 0, contextClassLoader),
+                    0, type().parameterList()
+                ),
+                bound,
+                generic
+            );
+
+            MethodHandle rebind = REBIND.bindTo(this)
+                                        .asCollector(Object[].class, type().parameterCount())
+                                        .asType(type());
+            for (SwitchPoint switchPoint : switchPoints) {
+                result = switchPoint.guardWithTest(result, rebind);
+            }
+            return result;
+        }
+
+        Scheduler rebind(Object[] args) throws Throwable {
+            MethodHandle target = bind();
+            setTarget(target);
+            return (Scheduler)target.invokeWithArguments(args);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[owner-class=%s, type=%s]", getClass().getSimpleName(), ownerClassLookup.lookupClass().getName(), type());
+        }
+    }
+
+    /**
+     * @param resolver (Scheduler provided, Object owner)Scheduler
+     * @param next (Scheduler provided, Object owner)Scheduler
+     * @return (Scheduler provided, Object owner)Scheduler that returns result of the resolver or, if it's null, result of the next
+     */
+    private static MethodHandle firstNonNull(MethodHandle resolver, MethodHandle next) {
+        // (Scheduler resolved, Scheduler provided, Object owner)Scheduler
+        MethodHandle selector = MethodHandles.guardWithTest(
+            IS_FIRST_NON_NULL_OF_3, RETURN_FIRST_OF_3, MethodHandles.dropArguments(next, 0, Scheduler.class)
+        );
+        return MethodHandles.foldArguments(selector, resolver);
+    }
+    
+    private static Scheduler currentScheduler(Scheduler explicitScheduler, Scheduler providedScheduler, Object owner, 
+                                              MethodHandles.Lookup ownerClassLookup, boolean isProviderRead) {
+        if (null != explicitScheduler) {
+            return explicitScheduler;
+        }
+        return isProviderRead ?
+            SchedulerResolvers.currentScheduler(providedScheduler, owner, ownerClassLookup)
+            :
+            SchedulerResolvers.currentScheduler(owner, ownerClassLookup);
+    }
+
+    private static boolean isNonNull(Scheduler scheduler) {
+        return null != scheduler;
+    }
+
+    private static boolean hasContextClassLoader(ClassLoader expected) {
+        return Thread.currentThread().getContextClassLoader() == expected;
+    }
+
+    private static final MethodHandle DEFAULT_SCHEDULER;
+    private static final MethodHandle IS_FIRST_NON_NULL_OF_3;
+    private static final MethodHandle RETURN_FIRST;
+    private static final MethodHandle RETURN_FIRST_OF_3;
+    private static final MethodHandle HAS_CONTEXT_CLASS_LOADER;
+    private static final MethodHandle CURRENT_SCHEDULER;
+    private static final MethodHandle REBIND;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            // (Scheduler, Object)Scheduler
+            DEFAULT_SCHEDULER = MethodHandles.dropArguments(
+                MethodHandles.constant(Scheduler.class, Scheduler.sameThreadContextless()), 0, Scheduler.class, Object.class
+            );
+            // (Scheduler, Scheduler, Object)boolean
+            IS_FIRST_NON_NULL_OF_3 = MethodHandles.dropArguments(
+                lookup.findStatic(SchedulerCallSites.class, "isNonNull", MethodType.methodType(boolean.class, Scheduler.class)),
+                1, Scheduler.class, Object.class
+            );
+            // (Scheduler, Object)Scheduler
+            RETURN_FIRST = MethodHandles.dropArguments(
+                MethodHandles.identity(Scheduler.class), 1, Object.class
+            );
+            // (Scheduler, Scheduler, Object)Scheduler
+            RETURN_FIRST_OF_3 = MethodHandles.dropArguments(
+                MethodHandles.identity(Scheduler.class), 1, Scheduler.class, Object.class
+            );
+            HAS_CONTEXT_CLASS_LOADER = lookup.findStatic(
+                SchedulerCallSites.class, "hasContextClassLoader", MethodType.methodType(boolean.class, ClassLoader.class)
+            );
+            CURRENT_SCHEDULER = lookup.findStatic(
+                SchedulerCallSites.class, "currentScheduler",
+                MethodType.methodType(Scheduler.class, Scheduler.class, Scheduler.class, Object.class, 
+                                      MethodHandles.Lookup.class, boolean.class)
+            );
+            REBIND = lookup.findVirtual(
+                SchedulerCallSite.class, "rebind", MethodType.methodType(Scheduler.class, Object[].class)
+            );
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+}
@@ -25,32 +25,65 @@
 package net.tascalate.async.core;
 
 import java.lang.invoke.MethodHandles;
-import java.util.Comparator;
-import java.util.Objects;
-import java.util.ServiceLoader;
-import java.util.stream.StreamSupport;
+import java.lang.invoke.SwitchPoint;
 
 import net.tascalate.async.Scheduler;
 import net.tascalate.async.spi.SchedulerResolver;
-import net.tascalate.async.util.Cache;
 
 class SchedulerResolvers {
     private SchedulerResolvers() {}
     
     static Scheduler currentScheduler(Object owner, MethodHandles.Lookup ownerClassLookup) {
+        return currentScheduler(owner, ownerClassLookup, false, null);
+    }
+    
+    /**
+     * Resolve scheduler when {@link net.tascalate.async.SchedulerProvider} member of the owner class 
+     * is already read by the bytecode enhancer, so resolvers that read providers are replaced 
+     * with the value supplied 
+     */
+    static Scheduler currentScheduler(Scheduler providedScheduler, Object owner, MethodHandles.Lookup ownerClassLookup) {
+        return currentScheduler(owner, ownerClassLookup, true, providedScheduler);
+    }
+    
+    private static Scheduler currentScheduler(Object owner, MethodHandles.Lookup ownerClassLookup, boolean isProviderRead, Scheduler providedScheduler) {
         ClassLoader serviceClassLoader = getServiceClassLoader(owner != null ? owner.getClass() : ownerClassLookup.lookupClass());
-        ServiceLoader<SchedulerResolver> serviceLoader = getServiceLoader(serviceClassLoader);
-
-        return StreamSupport.stream(serviceLoader.spliterator(), false)
-            .sorted(SCHEDULER_RESOLVER_BY_PRIORITY)
-            .map(l -> l.resolve(owner, ownerClassLookup))
-            .filter(Objects::nonNull)
-            .findFirst()
-            .orElse(Scheduler.sameThreadContextless())
-        ;
+        SchedulerResolver[] resolvers = getResolvers(serviceClassLoader);
+        for (SchedulerResolver resolver : resolvers) {
+            Scheduler scheduler = isProviderRead && resolver.readsSchedulerProviders() ?
+                providedScheduler : resolver.resolve(owner, ownerClassLookup);
+            if (null != scheduler) {
+                return scheduler;
+            }
+        }
+        return Scheduler.sameThreadContextless();
+    }
+    
+    static void invalidate(ClassLoader classLoader) {
+        RESOLVERS.invalidate(classLoader);
+        invalidateBindings();
+    }
+    
+    static void invalidateAll() {
+        RESOLVERS.invalidateAll();
+        invalidateBindings();
+    }
+    
+    /**
+     * Switch point that is invalidated whenever cached resolvers are discarded,
+     * so all bound invocation sites must be re-bound
+     */
+    static SwitchPoint bindingsSwitchPoint() {
+        return bindingsSwitchPoint;
+    }
+    
+    private static synchronized void invalidateBindings() {
+        SwitchPoint previous = bindingsSwitchPoint;
+        bindingsSwitchPoint = new SwitchPoint();
+        SwitchPoint.invalidateAll(new SwitchPoint[] {previous});
     }
     
-    private static ClassLoader getServiceClassLoader(Class<?> ownerClassLoaderSource) {
+    static ClassLoader getServiceClassLoader(Class<?> ownerClassLoaderSource) {
         if (null == ownerClassLoaderSource) {
             ownerClassLoaderSource = SchedulerResolvers.class;     
         }
@@ -60,11 +93,9 @@ class SchedulerResolvers {
             contextClassLoader : ownerClassLoader;
     }
     
-    private static ServiceLoader<SchedulerResolver> getServiceLoader(ClassLoader classLoader) {
-        return SERVICE_LOADER_BY_CLASS_LOADER.get(
-            classLoader, 
-            cl -> ServiceLoader.load(SchedulerResolver.class, cl)
-        );
+    // Pre-sorted by priority, highest first
+    static SchedulerResolver[] getResolvers(ClassLoader classLoader) {
+        return RESOLVERS.servicesOf(classLoader);
     }
     
     private static boolean isParent(ClassLoader parent, ClassLoader child) {
@@ -76,7 +107,7 @@ class SchedulerResolvers {
         return false;
     }
     
-    private static ClassLoader classLoaderOfContext() {
+    static ClassLoader classLoaderOfContext() {
         ClassLoader result = Thread.currentThread().getContextClassLoader();
         return null != result ? result : classLoaderOfClass(SchedulerResolvers.class);
     }
@@ -89,9 +120,8 @@ class SchedulerResolvers {
         return result;
     }
     
-    private static final Comparator<SchedulerResolver> SCHEDULER_RESOLVER_BY_PRIORITY = 
-        Comparator.comparing(SchedulerResolver::priority).reversed();
-    private static final Cache<ClassLoader, ServiceLoader<SchedulerResolver>> SERVICE_LOADER_BY_CLASS_LOADER = 
-        new Cache<>();
+    private static final ServiceChain<SchedulerResolver> RESOLVERS = 
+        new ServiceChain<>(SchedulerResolver.class, SchedulerResolver::priority, SchedulerResolver[]::new);
+    private static volatile SwitchPoint bindingsSwitchPoint = new SwitchPoint();
 
 }
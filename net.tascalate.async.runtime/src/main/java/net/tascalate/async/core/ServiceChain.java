@@ -0,0 +1,77 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.Comparator;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.StreamSupport;
+
+import net.tascalate.async.util.Cache;
+
+/**
+ * Chain of the registered SPI services, loaded per class loader via {@link ServiceLoader} 
+ * and pre-sorted by priority, highest first.
+ * <p>Chains are held by the cache with weak keys, so class loaders are not pinned, 
+ * and the lookup of the chain loaded already is lock-free and allocation-free.
+ */
+final class ServiceChain<S> {
+    private final Class<S> serviceClass;
+    private final Comparator<S> byPriority;
+    private final IntFunction<S[]> arrayFactory;
+    private final Cache<ClassLoader, S[]> servicesByClassLoader = new Cache<>();
+    private final Function<ClassLoader, S[]> serviceLoader = this::loadServices;
+    
+    ServiceChain(Class<S> serviceClass, ToIntFunction<? super S> priority, IntFunction<S[]> arrayFactory) {
+        this.serviceClass = serviceClass;
+        this.byPriority   = Comparator.<S>comparingInt(priority).reversed();
+        this.arrayFactory = arrayFactory;
+    }
+    
+    S[] servicesOf(ClassLoader classLoader) {
+        return servicesByClassLoader.get(classLoader, serviceLoader);
+    }
+    
+    S[] servicesOfContext() {
+        return servicesOf(SchedulerResolvers.classLoaderOfContext());
+    }
+    
+    void invalidate(ClassLoader classLoader) {
+        servicesByClassLoader.remove(classLoader);
+    }
+    
+    void invalidateAll() {
+        servicesByClassLoader.clear();
+    }
+    
+    private S[] loadServices(ClassLoader classLoader) {
+        ServiceLoader<S> serviceLoader = ServiceLoader.load(serviceClass, classLoader);
+        return StreamSupport.stream(serviceLoader.spliterator(), false)
+            .sorted(byPriority)
+            .toArray(arrayFactory);
+    }
+}
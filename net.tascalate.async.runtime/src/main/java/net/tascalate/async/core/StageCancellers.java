@@ -0,0 +1,116 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+import net.tascalate.async.spi.StageCanceller;
+
+/**
+ * Cancellation of the awaited stages.
+ * <p>{@link Future}-s are cancelled directly, other stages via the registered {@link StageCanceller}-s 
+ * or via their public <code>completeExceptionally(Throwable)</code> method with the stackless 
+ * {@link CancellationSignal}. The method handle of <code>completeExceptionally</code> is resolved 
+ * once per stage class, so cancellation involves neither reflection nor stack trace filling.
+ */
+class StageCancellers {
+    
+    private StageCancellers() {}
+    
+    static boolean cancel(CompletionStage<?> stage, boolean mayInterruptIfRunning) {
+        if (stage instanceof Future) {
+            return ((Future<?>)stage).cancel(mayInterruptIfRunning);
+        }
+        for (StageCanceller canceller : CANCELLERS.servicesOfContext()) {
+            if (canceller.accepts(stage)) {
+                return canceller.cancel(stage, mayInterruptIfRunning);
+            }
+        }
+        MethodHandle completeExceptionally = COMPLETE_EXCEPTIONALLY.get(stage.getClass());
+        if (null == completeExceptionally) {
+            return false;
+        }
+        try {
+            return (boolean)completeExceptionally.invokeExact(stage, (Throwable)new CancellationSignal());
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+    
+    static void invalidate(ClassLoader classLoader) {
+        CANCELLERS.invalidate(classLoader);
+    }
+    
+    static void invalidateAll() {
+        CANCELLERS.invalidateAll();
+    }
+    
+    private static MethodHandle completeExceptionallyOf(Class<?> stageClass) {
+        Method method;
+        try {
+            method = stageClass.getMethod("completeExceptionally", Throwable.class);
+        } catch (ReflectiveOperationException | SecurityException ex) {
+            return null;
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException ex) {
+            // Public method of the non-public class
+            try {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException | RuntimeException ex2) {
+                return null;
+            }
+        }
+        if (method.getReturnType() != boolean.class) {
+            // Treat the void or non-boolean result as a successful cancellation
+            handle = MethodHandles.filterReturnValue(
+                handle.asType(handle.type().changeReturnType(void.class)), 
+                MethodHandles.constant(boolean.class, Boolean.TRUE)
+            );
+        }
+        return handle.asType(COMPLETE_EXCEPTIONALLY_TYPE);
+    }
+    
+    private static final MethodType COMPLETE_EXCEPTIONALLY_TYPE = 
+        MethodType.methodType(boolean.class, CompletionStage.class, Throwable.class);
+    
+    private static final ClassValue<MethodHandle> COMPLETE_EXCEPTIONALLY = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            return completeExceptionallyOf(type);
+        }
+    };
+    
+    private static final ServiceChain<StageCanceller> CANCELLERS = 
+        new ServiceChain<>(StageCanceller.class, StageCanceller::priority, StageCanceller[]::new);
+}
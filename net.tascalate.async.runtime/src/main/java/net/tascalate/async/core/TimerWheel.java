@@ -0,0 +1,287 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed-wheel timer shared by all timed awaits of the runtime.
+ * <p>Scheduling and cancellation are O(1): new and cancelled timeouts are passed to the single 
+ * daemon worker thread via lock-free queues, the worker places timeouts into the wheel buckets 
+ * and expires the current bucket every tick. Precision is limited by the tick duration 
+ * ({@value #DEFAULT_TICK_MILLIS} milliseconds unless overridden via the 
+ * <code>net.tascalate.async.timerTickMillis</code> system property).
+ * <p>Expiration tasks are run on the worker thread, so they must be short: tasks that resume 
+ * methods or complete stages pass this work to {@link #handOff(Runnable)}.
+ */
+final class TimerWheel {
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+    
+    static final long DEFAULT_TICK_MILLIS = 10;
+    static final TimerWheel INSTANCE = new TimerWheel(
+        TimeUnit.MILLISECONDS.toNanos(Math.max(1L, Long.getLong("net.tascalate.async.timerTickMillis", DEFAULT_TICK_MILLIS))), 
+        512
+    );
+    
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+    
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> pending   = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    // Accessed only by the worker thread
+    private long tick;
+    
+    private TimerWheel(long tickNanos, int wheelSize) {
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+    }
+    
+    Timeout schedule(Runnable task, Duration delay) {
+        if (started.compareAndSet(false, true)) {
+            Thread worker = new Thread(this::work, "tascalate-async-timer");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + toNanos(delay));
+        pending.offer(timeout);
+        return timeout;
+    }
+    
+    CompletableFuture<Void> delay(Duration delay) {
+        if (delay.isZero() || delay.isNegative()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        DelayPromise result = new DelayPromise();
+        result.timeout = schedule(result::expire, delay);
+        return result;
+    }
+    
+    /**
+     * Run the work of the expired timeout (cancellation, resume, completion callbacks) 
+     * on the common pool, so it doesn't delay other timeouts of the worker thread.
+     */
+    static void handOff(Runnable task) {
+        try {
+            ForkJoinPool.commonPool().execute(task);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Expired timeout is rejected by the common pool, running it on the timer thread", ex);
+            task.run();
+        }
+    }
+    
+    private void work() {
+        while (true) {
+            waitForNextTick();
+            Timeout timeout;
+            while (null != (timeout = cancelled.poll())) {
+                if (null != timeout.bucket) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+            transferPending();
+            wheel[(int)(tick & mask)].expire();
+            tick++;
+        }
+    }
+    
+    private void waitForNextTick() {
+        long deadline = startTime + tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime();
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException ex) {
+                // Timer is never stopped, ignore
+            }
+        }
+    }
+    
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pending.poll();
+            if (null == timeout) {
+                break;
+            }
+            if (timeout.state != Timeout.ACTIVE) {
+                continue;
+            }
+            long calculated = (timeout.deadline - startTime) / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // Past deadlines are expired on the current tick
+            long ticks = Math.max(calculated, tick);
+            wheel[(int)(ticks & mask)].add(timeout);
+        }
+    }
+    
+    private static long toNanos(Duration delay) {
+        try {
+            return Math.max(0L, delay.toNanos());
+        } catch (ArithmeticException ex) {
+            // Way too far in the future
+            return Long.MAX_VALUE >> 1;
+        }
+    }
+    
+    static final class Timeout {
+        static final int ACTIVE    = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED   = 2;
+        
+        private final TimerWheel timer;
+        private final Runnable task;
+        final long deadline;
+        volatile int state;
+        // Accessed only by the worker thread
+        long remainingRounds;
+        Bucket bucket;
+        Timeout prev;
+        Timeout next;
+        
+        Timeout(TimerWheel timer, Runnable task, long deadline) {
+            this.timer    = timer;
+            this.task     = task;
+            this.deadline = deadline;
+        }
+        
+        boolean cancel() {
+            if (STATE.compareAndSet(this, ACTIVE, CANCELLED)) {
+                timer.cancelled.offer(this);
+                return true;
+            } else {
+                return false;
+            }
+        }
+        
+        void expire() {
+            if (STATE.compareAndSet(this, ACTIVE, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    log.warn("Timer task failed", ex);
+                }
+            }
+        }
+        
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = 
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+    }
+    
+    static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+        
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (null == head) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+        
+        void expire() {
+            Timeout timeout = head;
+            while (null != timeout) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+        
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (null != timeout.prev) {
+                timeout.prev.next = next;
+            }
+            if (null != next) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev   = null;
+            timeout.next   = null;
+            timeout.bucket = null;
+        }
+    }
+    
+    static final class DelayPromise extends CompletableFuture<Void> {
+        Timeout timeout;
+        
+        void expire() {
+            if (!isDone()) {
+                handOff(() -> complete(null));
+            }
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (super.cancel(mayInterruptIfRunning)) {
+                timeout.cancel();
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tascalate.async.Scheduler;
+import net.tascalate.async.util.Cache;
+
+/**
+ * Alternative execution engine that runs <code>@async</code> method on its own virtual thread
+ * and parks this thread on <code>await</code> instead of suspending the continuation.
+ * <p>The engine is selected with the system property <code>net.tascalate.async.engine=virtual-threads</code>
+ * and requires Java 21 or above, otherwise the default continuations engine is used. 
+ * Only methods of the schedulers with {@link Scheduler.Characteristics#VIRTUAL_THREADS} run 
+ * on this engine, the scheduler is used only to contextualize method body then; methods of other 
+ * schedulers run on continuations, so their classes must still be instrumented by javaflow. 
+ * <p>Methods on this engine are not run within javaflow continuations, so code that uses 
+ * javaflow API directly, like <code>StackRecorder.get()</code> or <code>Continuation.suspend()</code>, 
+ * is not compatible with it.
+ */
+final class VirtualThreadEngine {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadEngine.class);
+    
+    private static final Scheduler VIRTUAL_THREADS = createScheduler();
+    
+    static final boolean ENABLED = null != VIRTUAL_THREADS;
+    
+    private static final ThreadLocal<AbstractAsyncMethod> CURRENT_METHOD = new ThreadLocal<>();
+    
+    private static final Cache<Scheduler, Boolean> ENGINE_BY_SCHEDULER = new Cache<>();
+    
+    private VirtualThreadEngine() {}
+    
+    static boolean accepts(AbstractAsyncMethod asyncMethod) {
+        return ENGINE_BY_SCHEDULER.get(asyncMethod.scheduler(), VirtualThreadEngine::selectEngine);
+    }
+    
+    static boolean runs(AbstractAsyncMethod asyncMethod) {
+        return CURRENT_METHOD.get() == asyncMethod;
+    }
+    
+    static void execute(AbstractAsyncMethod asyncMethod) {
+        Runnable body = asyncMethod.scheduler().contextualize(() -> {
+            CURRENT_METHOD.set(asyncMethod);
+            try {
+                asyncMethod.run();
+            } finally {
+                CURRENT_METHOD.remove();
+            }
+        });
+        VIRTUAL_THREADS.schedule(body);
+    }
+    
+    static AbstractAsyncMethod currentMethod() {
+        return CURRENT_METHOD.get();
+    }
+    
+    private static Boolean selectEngine(Scheduler scheduler) {
+        boolean virtualThreads = scheduler.characteristics().contains(Scheduler.Characteristics.VIRTUAL_THREADS);
+        log.info("Using {} engine for async methods of the scheduler {}", 
+                 virtualThreads ? "virtual threads" : "continuations", scheduler);
+        return virtualThreads;
+    }
+    
+    private static Scheduler createScheduler() {
+        if (!"virtual-threads".equals(System.getProperty("net.tascalate.async.engine"))) {
+            return null;
+        }
+        try {
+            return Scheduler.virtualThreads();
+        } catch (UnsupportedOperationException ex) {
+            log.warn("Virtual threads engine is not supported, falling back to continuations", ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import net.tascalate.async.Scheduler;
+
+/**
+ * Decorator that coalesces resumes of continuations into the single submission to the delegate scheduler.
+ * <p>Resumes are collected into the lock-free queue; while the queue is non-empty there is exactly one 
+ * drain task submitted to the delegate, that runs at most <code>maxBatchSize</code> resumes and re-submits 
+ * itself if more are pending, so other tasks of the delegate executor are not starved. If the delegate 
+ * rejects the re-submission then the drain task runs the pending resumes itself.
+ * <p>Resumes are never interruptible, even if the delegate is. 
+ * Contextualization is delegated as is.
+ */
+public class BatchingScheduler extends AbstractScheduler {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    
+    private final Scheduler delegate;
+    private final int maxBatchSize;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final Runnable drainTask = this::drain;
+    private volatile int scheduled;
+    
+    public BatchingScheduler(Scheduler delegate) {
+        this(delegate, DEFAULT_MAX_BATCH_SIZE);
+    }
+    
+    public BatchingScheduler(Scheduler delegate, int maxBatchSize) {
+        super(null, null);
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max. batch size must be positive: " + maxBatchSize);
+        }
+        this.delegate     = delegate;
+        this.maxBatchSize = maxBatchSize;
+    }
+    
+    @Override
+    public Runnable contextualize(Runnable resumeContinuation) {
+        return delegate.contextualize(resumeContinuation);
+    }
+    
+    @Override
+    public CompletionStage<?> schedule(Runnable command) {
+        SchedulePromise<?> result = new SchedulePromise<>();
+        Runnable wrapper = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                    result.internalSuccess(null);
+                } catch (final Throwable ex) {
+                    result.internalFailure(ex);
+                }
+            }
+        };
+        pending.offer(wrapper);
+        if (SCHEDULED.compareAndSet(this, 0, 1)) {
+            try {
+                delegate.schedule(drainTask);
+            } catch (RejectedExecutionException ex) {
+                pending.remove(wrapper);
+                scheduled = 0;
+                throw ex;
+            }
+        }
+        return result;
+    }
+    
+    private void drain() {
+        while (true) {
+            Runnable next;
+            for (int i = 0; i < maxBatchSize && null != (next = pending.poll()); i++) {
+                next.run();
+            }
+            scheduled = 0;
+            // Re-check for resumes queued after the last poll or left over the batch size
+            if (pending.isEmpty() || !SCHEDULED.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            try {
+                delegate.schedule(drainTask);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // Callers of schedule() are gone already, so run resumes left 
+                // on this thread of the delegate rather than strand them
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+            "%s[delegate=%s, max-batch-size=%d]", 
+            getClass().getSimpleName(), delegate, maxBatchSize
+        );
+    }
+    
+    private static final AtomicIntegerFieldUpdater<BatchingScheduler> SCHEDULED = 
+        AtomicIntegerFieldUpdater.newUpdater(BatchingScheduler.class, "scheduled");
+}
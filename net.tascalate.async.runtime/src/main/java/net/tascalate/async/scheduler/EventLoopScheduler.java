@@ -0,0 +1,179 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.scheduler;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import net.tascalate.async.Scheduler;
+
+/**
+ * Group of single-threaded event loops, one per core by default.
+ * <p>Every {@link EventLoop} of the group is a non-interruptible {@link Scheduler} on its own, 
+ * so the <code>@async</code> method that is pinned to the loop (via {@link #loopFor(Object)}
+ * or the event loop <code>SchedulerResolver</code>) is resumed on the same thread every time, 
+ * without migrating the continuation between cores.
+ * <p>When used as a {@link Scheduler} directly, the group keeps the code on the current loop 
+ * if invoked from the loop thread of this group, otherwise it distributes the code over 
+ * the loops in round-robin order. Threads of the loops are daemon threads; use 
+ * {@link #shutdown()} to stop them explicitly.
+ */
+public class EventLoopScheduler extends AbstractScheduler {
+    private static final AtomicInteger GROUP_COUNTER = new AtomicInteger();
+    private static final ThreadLocal<EventLoop> CURRENT_LOOP = new ThreadLocal<>();
+    
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    
+    public EventLoopScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public EventLoopScheduler(int loopCount) {
+        this(loopCount, null);
+    }
+    
+    public EventLoopScheduler(int loopCount, Function<? super Runnable, ? extends Runnable> contextualizer) {
+        super(null, contextualizer);
+        if (loopCount < 1) {
+            throw new IllegalArgumentException("Number of event loops must be positive: " + loopCount);
+        }
+        int groupId = GROUP_COUNTER.incrementAndGet();
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(this, "tascalate-async-event-loop-" + groupId + "-" + i, contextualizer);
+        }
+    }
+    
+    /**
+     * @return the event loop that runs the current thread (of any group) or <code>null</code> 
+     * if the current thread is not an event loop thread
+     */
+    public static EventLoop current() {
+        return CURRENT_LOOP.get();
+    }
+    
+    public int loopCount() {
+        return loops.length;
+    }
+    
+    /**
+     * Select the event loop by the key, the same key is always mapped to the same loop.
+     * @param key the key to select the loop, when <code>null</code> then the current loop 
+     * of this group or the next loop in round-robin order is selected
+     * @return the event loop
+     */
+    public EventLoop loopFor(Object key) {
+        return null == key ? currentOrNextLoop() : loopForHash(key.hashCode());
+    }
+    
+    public EventLoop loopForHash(int hash) {
+        int h = hash ^ (hash >>> 16);
+        return loops[(h & 0x7FFFFFFF) % loops.length];
+    }
+    
+    @Override
+    public CompletionStage<?> schedule(Runnable command) {
+        return currentOrNextLoop().schedule(command);
+    }
+    
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.executor.shutdown();
+        }
+    }
+    
+    private EventLoop currentOrNextLoop() {
+        EventLoop current = CURRENT_LOOP.get();
+        if (null != current && current.group == this) {
+            return current;
+        } else {
+            return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return super.toString() + String.format("[loops=%d]", loops.length);
+    }
+    
+    public static final class EventLoop extends AbstractScheduler {
+        private final EventLoopScheduler group;
+        private final String name;
+        private final ExecutorService executor;
+        
+        EventLoop(EventLoopScheduler group, String name, Function<? super Runnable, ? extends Runnable> contextualizer) {
+            super(null, contextualizer);
+            this.group    = group;
+            this.name     = name;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), this::newThread);
+        }
+        
+        public EventLoopScheduler group() {
+            return group;
+        }
+        
+        public boolean inEventLoop() {
+            return CURRENT_LOOP.get() == this;
+        }
+        
+        @Override
+        public CompletionStage<?> schedule(Runnable command) {
+            SchedulePromise<?> result = new SchedulePromise<>();
+            Runnable wrapper = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                        result.internalSuccess(null);
+                    } catch (final Throwable ex) {
+                        result.internalFailure(ex);
+                    }
+                }
+            };
+            executor.execute(wrapper);
+            return result;
+        }
+        
+        private Thread newThread(Runnable loop) {
+            Thread thread = new Thread(() -> {
+                CURRENT_LOOP.set(this);
+                loop.run();
+            }, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s[name=%s]", getClass().getSimpleName(), name);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.scheduler;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import net.tascalate.async.ContextVar;
+
+/**
+ * Non-interruptible scheduler that dispatches resumes of continuations in weighted fair order 
+ * rather than in FIFO order.
+ * <p>The weight (priority) of the resume is read from the {@link ContextVar} in {@link #contextualize(Runnable)}, 
+ * i.e. in the context of the suspended <code>@async</code> method; <code>null</code> means {@link #DEFAULT_WEIGHT}. 
+ * Resumes are queued with self-clocked fair queuing tags, so every weight class gets the share 
+ * of the executor proportional to its weight, and resumes of the class that was idle jump over 
+ * the backlog of the busy classes. Every submission to the executor runs the pending resume 
+ * with the smallest tag at the moment it starts.
+ * <p>Queue-wait time is collected per weight class, see {@link #queueWaitStats()}.
+ */
+public class PriorityScheduler extends AbstractExecutorScheduler<Executor> {
+    public static final int DEFAULT_WEIGHT = 1;
+    
+    private static final long VIRTUAL_TIME_UNIT = 1L << 20;
+    
+    private final ContextVar<? extends Number> weightVar;
+    private final ConcurrentMap<Integer, WeightClass> weightClasses = new ConcurrentHashMap<>();
+    private final Runnable dispatchTask = this::dispatchNext;
+    
+    // Guarded by queue
+    private final PriorityQueue<QueuedResume> queue = new PriorityQueue<>();
+    private long virtualTime;
+    private long sequence;
+    
+    public PriorityScheduler(Executor executor, ContextVar<? extends Number> weightVar) {
+        this(executor, weightVar, null);
+    }
+    
+    public PriorityScheduler(Executor executor, ContextVar<? extends Number> weightVar, Function<? super Runnable, ? extends Runnable> contextualizer) {
+        super(executor, EnumSet.of(Characteristics.PRIORITY), contextualizer);
+        this.weightVar = weightVar;
+    }
+    
+    @Override
+    public Runnable contextualize(Runnable resumeContinuation) {
+        return new WeightedResume(super.contextualize(resumeContinuation), weightClass(weightVar.get()));
+    }
+    
+    @Override
+    public CompletionStage<?> schedule(Runnable command) {
+        QueuedResume resume = command instanceof WeightedResume ? 
+            new QueuedResume((WeightedResume)command) :
+            new QueuedResume(command, weightClass(weightVar.get()));
+            
+        synchronized (queue) {
+            WeightClass weightClass = resume.weightClass;
+            long startTag = Math.max(virtualTime, weightClass.lastFinishTag);
+            weightClass.lastFinishTag = resume.finishTag = startTag + VIRTUAL_TIME_UNIT / weightClass.weight;
+            resume.sequence = sequence++;
+            queue.add(resume);
+        }
+        try {
+            executor.execute(dispatchTask);
+        } catch (RejectedExecutionException ex) {
+            boolean removed;
+            synchronized (queue) {
+                removed = queue.remove(resume);
+            }
+            if (removed) {
+                throw ex;
+            }
+            // Otherwise already dispatched by other submission
+        }
+        return resume.result;
+    }
+    
+    /**
+     * @return snapshot of queue-wait statistics keyed by the weight class
+     */
+    public Map<Integer, QueueWaitStats> queueWaitStats() {
+        Map<Integer, QueueWaitStats> result = new TreeMap<>();
+        for (WeightClass weightClass : weightClasses.values()) {
+            result.put(weightClass.weight, weightClass.stats());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+    
+    private void dispatchNext() {
+        QueuedResume resume;
+        synchronized (queue) {
+            resume = queue.poll();
+            if (null == resume) {
+                return;
+            }
+            virtualTime = resume.finishTag;
+        }
+        resume.run();
+    }
+    
+    private WeightClass weightClass(Number weight) {
+        int value = null == weight ? DEFAULT_WEIGHT : Math.max(1, weight.intValue());
+        WeightClass result = weightClasses.get(value);
+        return null != result ? result : weightClasses.computeIfAbsent(value, WeightClass::new);
+    }
+    
+    @Override
+    public String toString() {
+        return super.toString() + String.format("[weight-var=%s]", weightVar);
+    }
+    
+    public static final class QueueWaitStats {
+        private final int weight;
+        private final long dispatched;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        
+        QueueWaitStats(int weight, long dispatched, long totalWaitNanos, long maxWaitNanos) {
+            this.weight         = weight;
+            this.dispatched     = dispatched;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos   = maxWaitNanos;
+        }
+        
+        public int weight() {
+            return weight;
+        }
+        
+        public long dispatched() {
+            return dispatched;
+        }
+        
+        public long totalWaitNanos() {
+            return totalWaitNanos;
+        }
+        
+        public long maxWaitNanos() {
+            return maxWaitNanos;
+        }
+        
+        public long averageWaitNanos() {
+            return dispatched == 0 ? 0 : totalWaitNanos / dispatched;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(
+                "%s[weight=%d, dispatched=%d, avg-wait-nanos=%d, max-wait-nanos=%d]",
+                getClass().getSimpleName(), weight, dispatched, averageWaitNanos(), maxWaitNanos
+            );
+        }
+    }
+    
+    private static final class WeightClass {
+        final int weight;
+        final LongAdder dispatched = new LongAdder();
+        final LongAdder totalWaitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        // Guarded by queue of the scheduler
+        long lastFinishTag;
+        
+        WeightClass(int weight) {
+            this.weight = weight;
+        }
+        
+        void recordWait(long waitNanos) {
+            dispatched.increment();
+            totalWaitNanos.add(waitNanos);
+            if (waitNanos > maxWaitNanos.get()) {
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            }
+        }
+        
+        QueueWaitStats stats() {
+            return new QueueWaitStats(weight, dispatched.sum(), totalWaitNanos.sum(), maxWaitNanos.get());
+        }
+    }
+    
+    private static final class WeightedResume implements Runnable {
+        final Runnable delegate;
+        final WeightClass weightClass;
+        
+        WeightedResume(Runnable delegate, WeightClass weightClass) {
+            this.delegate    = delegate;
+            this.weightClass = weightClass;
+        }
+        
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+    
+    private static final class QueuedResume implements Runnable, Comparable<QueuedResume> {
+        final SchedulePromise<?> result = new SchedulePromise<>();
+        final Runnable command;
+        final WeightClass weightClass;
+        final long enqueuedAt = System.nanoTime();
+        long finishTag;
+        long sequence;
+        
+        QueuedResume(WeightedResume resume) {
+            this(resume.delegate, resume.weightClass);
+        }
+        
+        QueuedResume(Runnable command, WeightClass weightClass) {
+            this.command     = command;
+            this.weightClass = weightClass;
+        }
+        
+        @Override
+        public void run() {
+            weightClass.recordWait(System.nanoTime() - enqueuedAt);
+            try {
+                command.run();
+                result.internalSuccess(null);
+            } catch (final Throwable ex) {
+                result.internalFailure(ex);
+            }
+        }
+        
+        @Override
+        public int compareTo(QueuedResume other) {
+            int byTag = Long.compare(finishTag, other.finishTag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+    }
+}
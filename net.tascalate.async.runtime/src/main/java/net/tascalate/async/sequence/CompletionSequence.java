@@ -24,87 +24,193 @@
  */
 package net.tascalate.async.sequence;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiConsumer;
 
 import java.util.stream.Stream;
 
 import net.tascalate.async.Sequence;
+import net.tascalate.async.Window;
 import net.tascalate.async.core.AsyncMethodExecutor;
 
+/**
+ * {@link Sequence} of promises in the order of their completion.
+ * <p>Settled promises are passed from completing threads to the consumer via lock-free 
+ * multi-producer / single-consumer linked queue; the node of the queue is the completion 
+ * callback of the promise itself, so nothing else is allocated per promise. The consumer
+ * arms the wake-up signal only when the queue is empty, producers touch it only when armed.
+ * <p>Pending promises are either enlisted chunk by chunk, when all promises of the previous
+ * chunk are settled, or via sliding {@link Window}: every settled promise is replaced right away 
+ * with the next one from the source, on the thread that settles it.
+ * <p>Closing the sequence cancels the enlisted promises that are not settled yet. The source
+ * is not iterated further, unless it is a {@link Collection}: its promises exist already,
+ * so these are cancelled as well.
+ */
 public class CompletionSequence<T, F extends CompletionStage<T>> implements Sequence<F> {
     
     private final Iterator<? extends F> pendingPromises;
     private final int chunkSize;
-    private final BlockingQueue<F> settledPromises = new LinkedBlockingQueue<>();
-    private final AtomicInteger remaining = new AtomicInteger(0);
+    private final int windowSize;
+    // Promises of the source are created already, cancel not enlisted ones on close
+    private final boolean eagerSource;
+    
+    // Consumer end of the queue, head is always the node consumed already (or a stub)
+    private Settled<F> head;
+    // Producers end of the queue
+    private volatile Settled<F> tail;
+    
+    // Enlisted but not settled promises, in window mode - the slots occupied
+    private volatile int remaining;
+    private volatile boolean closed;
+    
+    // Window mode: requested pulls from the source, the thread that increments it from zero pulls
+    private volatile int pulls;
+    private boolean started;
+    private boolean exhausted;
+    private volatile Throwable pullError;
+    
+    // Enlisted promises for cancellation on close: the first and the latest one, the list 
+    // is maintained by the enlisting thread only, settled promises are swept out periodically
+    private volatile Settled<F> enlisted;
+    private Settled<F> lastEnlisted;
+    private int enlistedCount;
     
-    private volatile CompletableFuture<Void> consumerLock = new CompletableFuture<>();
-    private Sequence<F> current = Sequence.empty();
+    // Consumer wake-up, not null only while the consumer is about to wait or waiting
+    private volatile CompletableFuture<Void> wakeup;
+    // Not completed wake-up that may be re-armed
+    private CompletableFuture<Void> spareWakeup;
     
     protected CompletionSequence(Iterator<? extends F> pendingValues, int chunkSize) {  
+        this(pendingValues, chunkSize, 0, false);
+    }
+    
+    protected CompletionSequence(Iterator<? extends F> pendingValues, Window window) {  
+        this(pendingValues, -1, window.size(), false);
+    }
+    
+    private CompletionSequence(Iterator<? extends F> pendingValues, int chunkSize, int windowSize, boolean eagerSource) {  
         this.pendingPromises = pendingValues;
         this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+        this.eagerSource = eagerSource;
+        this.head = this.tail = new Settled<>(this, null);
     }
     
     @Override
     public F next() {
         while (true) {
-            // If we may return more without switching state...
-            F resolvedValue = current.next(); 
+            if (closed) {
+                return null;
+            }
+            // Read before polling, so zero means that all enlisted promises are in the queue
+            int unprocessed = remaining;
+            // If we are consuming slower than producing 
+            // then use available results right away
+            F resolvedValue = poll();
             if (null != resolvedValue) {
                 return resolvedValue;
             }
-    
-            int unprocessed = remaining.get();
-            if (unprocessed < 0) {
-                // Forcibly closed
-                return null;
-            } else {
-                final Collection<F> readyValues = new ArrayList<>(/*Math.max(0, chunkSize)*/);
-                settledPromises.drainTo(readyValues);
-    
-                if (!readyValues.isEmpty()) {
-                    // If we are consuming slower than producing 
-                    // then use available results right away
-                    current = Sequence.of(readyValues);
-                    // recursion via loop
-                    continue; 
+            
+            Throwable error = pullError;
+            if (null != error) {
+                pullError = null;
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException)error;
+                } else if (error instanceof Error) {
+                    throw (Error)error;
                 } else {
-                    // Otherwise await for any result...            
-                    if (unprocessed > 0) {
-                        AsyncMethodExecutor.await(consumerLock);
-                        consumerLock = new CompletableFuture<>();
-                        // ... and try again
-                        // recursion via loop
-                        continue;
-                    } else {
-                        current = Sequence.empty();
-                        if (enlistPending()) {
-                            // More was enlisted
-                            continue; //recursion via loop
-                        } else {
-                            // ...or stop when over
-                            return null;
-                        }
-                    }
+                    throw new CompletionException(error);
                 }
             }
+            
+            if (unprocessed > 0) {
+                // Otherwise await for any result...
+                CompletableFuture<Void> signal = armWakeup();
+                if (null != signal) {
+                    AsyncMethodExecutor.await(signal);
+                }
+                // ... and try again
+                // recursion via loop
+                continue;
+            } else if (windowSize > 0) {
+                if (started) {
+                    // All slots are released, source is over
+                    return null;
+                }
+                started = true;
+                REMAINING.addAndGet(this, windowSize);
+                requestPulls(windowSize);
+                continue;
+            } else if (enlistPending()) {
+                // More was enlisted
+                continue; //recursion via loop
+            } else {
+                // ...or stop when over
+                return null;
+            }
         }
     }
 
     @Override
     public void close() {
-        remaining.set(Integer.MIN_VALUE);
-        current.close();
-        current = Sequence.empty();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Let settled promises to be collected
+        head = tail;
+        head.promise = null;
+        spareWakeup = null;
+        
+        // Producers ignore completions from now on, including ones caused by cancellation below
+        cancelEnlisted();
+        if (windowSize > 0) {
+            // The source is accessed by the pulling thread only, 
+            // one more pull request lets it see the closed sequence
+            requestPulls(1);
+        } else {
+            cancelNotEnlisted();
+        }
+    }
+    
+    private F poll() {
+        Settled<F> next = head.next;
+        if (null == next) {
+            return null;
+        }
+        F result = next.promise;
+        // Consumed node becomes the new stub
+        next.promise = null;
+        head = next;
+        return result;
+    }
+    
+    /**
+     * @return the signal to await or <code>null</code> if promises were settled meanwhile
+     */
+    private CompletableFuture<Void> armWakeup() {
+        CompletableFuture<Void> signal = spareWakeup;
+        if (null == signal) {
+            signal = new CompletableFuture<>();
+        }
+        spareWakeup = null;
+        WAKEUP.set(this, signal);
+        // Re-check after arming - producer might enlist a promise before it
+        if (null != head.next || remaining <= 0) {
+            if (WAKEUP.compareAndSet(this, signal, null)) {
+                // Not used by producers, re-arm next time
+                spareWakeup = signal;
+                return null;
+            }
+        }
+        return signal;
     }
     
     private boolean enlistPending() {
@@ -117,8 +223,8 @@ public class CompletionSequence<T, F extends CompletionStage<T>> implements Sequ
             // while stage may be completed already
             // we should increment step-by-step 
             // instead of setting the value at once
-            remaining.incrementAndGet(); 
-            nextPromise.whenComplete((r, e) -> enlistResolved(nextPromise));
+            REMAINING.incrementAndGet(this); 
+            enlist(nextPromise);
             enlisted = true;
             
             i++;
@@ -129,35 +235,214 @@ public class CompletionSequence<T, F extends CompletionStage<T>> implements Sequ
         return enlisted;
     }
     
-    private void enlistResolved(F resolvedPromise) {
+    /**
+     * Window mode: fill the slots (already counted in <code>remaining</code>) from the source.
+     * Pulls are serialized - the source is accessed only by the thread that incremented 
+     * the counter from zero, others (including the nested calls from completion handlers 
+     * of the stages completed synchronously) just add requests.
+     */
+    private void requestPulls(int count) {
+        if (PULLS.getAndAdd(this, count) != 0) {
+            return;
+        }
+        int missed = count;
+        while (true) {
+            for (int i = 0; i < missed; i++) {
+                F nextPromise = pullPending();
+                if (null != nextPromise) {
+                    // The slot is passed to the promise
+                    enlist(nextPromise);
+                } else {
+                    // The slot is released
+                    REMAINING.decrementAndGet(this);
+                    wakeupConsumer();
+                }
+            }
+            missed = PULLS.addAndGet(this, -missed);
+            if (0 == missed) {
+                break;
+            }
+        }
+    }
+    
+    private F pullPending() {
+        if (exhausted) {
+            return null;
+        }
         try {
-            settledPromises.put(resolvedPromise);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e); // Shouldn't happen for the queue with an unlimited size
+            if (closed) {
+                cancelNotEnlisted();
+            } else if (pendingPromises.hasNext()) {
+                return pendingPromises.next();
+            }
+        } catch (Throwable ex) {
+            // May be called by the thread that completes the stage, re-throw to the consumer
+            if (!closed) {
+                pullError = ex;
+            }
+        }
+        exhausted = true;
+        return null;
+    }
+    
+    private void enlist(F promise) {
+        Settled<F> node = new Settled<>(this, promise);
+        // Settled promises have nothing to cancel, sweep them out once the list 
+        // is twice as long as the pending ones, so the sweep is amortized O(1) per promise
+        if (enlistedCount > 2 * Math.max(remaining, MIN_SWEEP_THRESHOLD)) {
+            sweepEnlisted();
+        }
+        if (null == enlisted) {
+            enlisted = node;
+        } else {
+            lastEnlisted.nextEnlisted = node;
+        }
+        lastEnlisted = node;
+        enlistedCount++;
+        
+        promise.whenComplete(node);
+        // Re-check after linking - the sequence might be closed before, 
+        // so the closing thread could miss the promise
+        if (closed) {
+            AsyncMethodExecutor.cancel(promise, true);
+        }
+    }
+    
+    /**
+     * Unlink settled promises anywhere in the list. Links are changed only to skip settled nodes, 
+     * so the concurrent traversal on close still reaches every promise that is not settled.
+     */
+    private void sweepEnlisted() {
+        Settled<F> first = null;
+        Settled<F> last  = null;
+        int count = 0;
+        for (Settled<F> node = enlisted; null != node; node = node.nextEnlisted) {
+            if (node.settled) {
+                continue;
+            }
+            if (null == last) {
+                first = node;
+            } else if (last.nextEnlisted != node) {
+                last.nextEnlisted = node;
+            }
+            last = node;
+            count++;
+        }
+        if (null != last) {
+            last.nextEnlisted = null;
+        }
+        enlisted = first;
+        lastEnlisted = last;
+        enlistedCount = count;
+    }
+    
+    private void cancelEnlisted() {
+        for (Settled<F> node = enlisted; null != node; node = node.nextEnlisted) {
+            F promise = node.promise;
+            if (!node.settled && null != promise) {
+                AsyncMethodExecutor.cancel(promise, true);
+            }
+        }
+        enlisted = null;
+    }
+    
+    private void cancelNotEnlisted() {
+        if (!eagerSource) {
+            return;
         }
+        while (pendingPromises.hasNext()) {
+            F promise = pendingPromises.next();
+            if (null != promise) {
+                AsyncMethodExecutor.cancel(promise, true);
+            }
+        }
+    }
+    
+    void enlistResolved(Settled<F> node) {
+        if (closed) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Settled<F> previous = TAIL.getAndSet(this, node);
+        // Till linked the consumer sees the queue as empty, the wake-up below resolves this
+        previous.next = node;
 
-        remaining.decrementAndGet();
-        consumerLock.complete(null);
+        if (windowSize > 0) {
+            // Keep the slot for the next promise
+            requestPulls(1);
+        } else {
+            REMAINING.decrementAndGet(this);
+        }
+        wakeupConsumer();
+    }
+    
+    private void wakeupConsumer() {
+        CompletableFuture<Void> signal = wakeup;
+        if (null != signal && WAKEUP.compareAndSet(this, signal, null)) {
+            signal.complete(null);
+        }
     }
 
     
     @Override
     public String toString() {
         return String.format(
-            "%s[current=%s, consumer-lock=%s, remaining=%s, resolved-promises=%s]",
-            getClass().getSimpleName(), current, consumerLock, remaining, settledPromises
+            "%s[wakeup=%s, remaining=%s, window=%s, closed=%s]",
+            getClass().getSimpleName(), wakeup, remaining, windowSize, closed
         );
     }
+    
+    static final class Settled<F extends CompletionStage<?>> implements BiConsumer<Object, Throwable> {
+        private final CompletionSequence<?, F> owner;
+        F promise;
+        volatile Settled<F> next;
+        // Enlisted after this one, for cancellation on close
+        volatile Settled<F> nextEnlisted;
+        volatile boolean settled;
+        
+        Settled(CompletionSequence<?, F> owner, F promise) {
+            this.owner = owner;
+            this.promise = promise;
+        }
+        
+        @Override
+        public void accept(Object result, Throwable error) {
+            settled = true;
+            owner.enlistResolved(this);
+        }
+    }
 
     public static <T, F extends CompletionStage<T>> Sequence<F> create(Stream<? extends F> pendingPromises, int chunkSize) {
-        return create(pendingPromises.iterator(), chunkSize);
+        return new CompletionSequence<>(pendingPromises.iterator(), chunkSize, 0, false);
     }
 
     public static <T, F extends CompletionStage<T>> Sequence<F> create(Iterable<? extends F> pendingPromises, int chunkSize) {
-        return create(pendingPromises.iterator(), chunkSize);
+        return new CompletionSequence<>(pendingPromises.iterator(), chunkSize, 0, pendingPromises instanceof Collection);
     }
     
-    private static <T, F extends CompletionStage<T>> Sequence< F> create(Iterator<? extends F> pendingPromises, int chunkSize) {
-        return new CompletionSequence<>(pendingPromises, chunkSize);
+    public static <T, F extends CompletionStage<T>> Sequence<F> create(Stream<? extends F> pendingPromises, Window window) {
+        return new CompletionSequence<>(pendingPromises.iterator(), -1, window.size(), false);
+    }
+
+    public static <T, F extends CompletionStage<T>> Sequence<F> create(Iterable<? extends F> pendingPromises, Window window) {
+        return new CompletionSequence<>(pendingPromises.iterator(), -1, window.size(), pendingPromises instanceof Collection);
     }
+    
+    private static final int MIN_SWEEP_THRESHOLD = 16;
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CompletionSequence, Settled> TAIL =
+        AtomicReferenceFieldUpdater.newUpdater(CompletionSequence.class, Settled.class, "tail");
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CompletionSequence, CompletableFuture> WAKEUP =
+        AtomicReferenceFieldUpdater.newUpdater(CompletionSequence.class, CompletableFuture.class, "wakeup");
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CompletionSequence> REMAINING =
+        AtomicIntegerFieldUpdater.newUpdater(CompletionSequence.class, "remaining");
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CompletionSequence> PULLS =
+        AtomicIntegerFieldUpdater.newUpdater(CompletionSequence.class, "pulls");
 }
@@ -0,0 +1,68 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.spi;
+
+/**
+ * Listener of the <code>@async</code> methods life-cycle, registered via {@link java.util.ServiceLoader}.
+ * <p>Listeners are loaded once, when the runtime is initialized; if there are no listeners registered 
+ * then instrumentation hooks are eliminated by JIT completely. 
+ * <p>Every event carries the invocation - an instance of the class generated for the <code>@async</code> 
+ * method, the same for all events of the single call, so <code>invocation.getClass()</code> is the generated class -
+ * the signature of the original method and the {@link System#nanoTime()} timestamp of the event.
+ * Listeners are invoked synchronously on the thread that runs the method and must be fast and non-blocking.
+ */
+public interface AsyncMethodListener {
+    
+    /**
+     * The method body is started.
+     */
+    default void onStart(Object invocation, String methodSignature, long nanoTime) {}
+    
+    /**
+     * The method is suspended on <code>await</code> of the pending stage.
+     */
+    default void onSuspend(Object invocation, String methodSignature, long nanoTime) {}
+    
+    /**
+     * The method is resumed after suspension.
+     */
+    default void onResume(Object invocation, String methodSignature, long nanoTime) {}
+    
+    /**
+     * The <code>await</code> is satisfied by the already completed stage without suspension.
+     */
+    default void onAwaitReady(Object invocation, String methodSignature, long nanoTime) {}
+    
+    /**
+     * The result of the method is resolved.
+     * @param error the error the method is failed with or <code>null</code> on success
+     */
+    default void onComplete(Object invocation, String methodSignature, long nanoTime, Throwable error) {}
+    
+    /**
+     * The result of the method is cancelled.
+     */
+    default void onCancel(Object invocation, String methodSignature, long nanoTime) {}
+}
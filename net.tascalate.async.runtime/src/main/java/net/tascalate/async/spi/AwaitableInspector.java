@@ -0,0 +1,81 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.spi;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Inspector of the {@link CompletionStage}-s passed to <code>await</code>.
+ * <p>Inspectors are registered via {@link java.util.ServiceLoader} like {@link SchedulerResolver}-s 
+ * and consulted in the order of the {@link #priority()}, highest first. The first inspector that 
+ * {@link #accepts(CompletionStage)} the stage is used to check whether the stage is already completed,
+ * so the <code>@async</code> method may proceed without suspending. All methods are invoked
+ * on the hot path of every <code>await</code> and must neither block nor allocate for completed stages.
+ */
+public interface AwaitableInspector {
+    
+    enum State {
+        PENDING, SUCCESS, FAILURE;
+    }
+    
+    int priority();
+    
+    /**
+     * @param stage the stage being awaited
+     * @return true if this inspector knows how to inspect the stage
+     */
+    boolean accepts(CompletionStage<?> stage);
+    
+    /**
+     * Inspect the completion state of the stage without blocking.
+     * @param stage the stage accepted by this inspector
+     * @return the state, never <code>null</code>
+     */
+    State stateOf(CompletionStage<?> stage);
+    
+    /**
+     * @param stage the stage in {@link State#SUCCESS} state
+     * @return the result of the stage
+     */
+    Object resultOf(CompletionStage<?> stage);
+    
+    /**
+     * @param stage the stage in {@link State#FAILURE} state
+     * @return the error of the stage, unwrapped from {@link java.util.concurrent.CompletionException} 
+     * or {@link java.util.concurrent.ExecutionException}
+     */
+    Throwable errorOf(CompletionStage<?> stage);
+    
+    /**
+     * Adapt the object that is not a {@link CompletionStage}, like a single-value publisher, 
+     * to the {@link CompletionStage} that may be awaited. 
+     * The default implementation supports no adaptation.
+     * @param awaitable the object passed to <code>await</code>
+     * @return the adapted stage or <code>null</code> if the object is not supported
+     */
+    default CompletionStage<?> adapt(Object awaitable) {
+        return null;
+    }
+}
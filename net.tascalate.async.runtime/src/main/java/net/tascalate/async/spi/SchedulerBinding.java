@@ -0,0 +1,154 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.spi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.tascalate.async.Scheduler;
+
+/**
+ * Result of binding {@link SchedulerResolver} to the class that declares <code>@async</code> methods.
+ * <p>Binding is created once per invocation site of the <code>@async</code> method and
+ * describes how the resolver calculates {@link Scheduler} for all subsequent invocations:
+ * <ul>
+ * <li>{@link #none()} - resolver never provides scheduler for the class</li>
+ * <li>{@link #constant(Scheduler)} - resolver always provides the same scheduler for the class</li>
+ * <li>{@link #of(MethodHandle)} - resolver provides scheduler via the method handle
+ * that accepts owner object (<code>null</code> for static methods)</li>
+ * <li>{@link #dynamic(SchedulerResolver, MethodHandles.Lookup)} - resolver is consulted on every invocation</li>
+ * </ul>
+ * Binding stays valid until any of the {@link SwitchPoint}-s added via {@link #validWhile(SwitchPoint)}
+ * is invalidated, then the invocation site is re-bound.
+ */
+public final class SchedulerBinding {
+    private static final MethodType RESOLVER_TYPE = MethodType.methodType(Scheduler.class, Object.class);
+
+    private static final MethodHandle RESOLVE;
+    static {
+        try {
+            RESOLVE = MethodHandles.publicLookup().findVirtual(
+                SchedulerResolver.class, "resolve",
+                MethodType.methodType(Scheduler.class, Object.class, MethodHandles.Lookup.class)
+            );
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final SchedulerBinding NONE = new SchedulerBinding(null, false, Collections.emptyList());
+
+    private final MethodHandle resolver;
+    private final boolean constant;
+    private final List<SwitchPoint> switchPoints;
+
+    private SchedulerBinding(MethodHandle resolver, boolean constant, List<SwitchPoint> switchPoints) {
+        this.resolver     = resolver;
+        this.constant     = constant;
+        this.switchPoints = switchPoints;
+    }
+
+    public static SchedulerBinding none() {
+        return NONE;
+    }
+
+    public static SchedulerBinding constant(Scheduler scheduler) {
+        if (null == scheduler) {
+            return NONE;
+        }
+        MethodHandle resolver = MethodHandles.dropArguments(
+            MethodHandles.constant(Scheduler.class, scheduler), 0, Object.class
+        );
+        return new SchedulerBinding(resolver, true, Collections.emptyList());
+    }
+
+    public static SchedulerBinding dynamic(SchedulerResolver resolver, MethodHandles.Lookup ownerClassLookup) {
+        MethodHandle handle = MethodHandles.insertArguments(RESOLVE.bindTo(resolver), 1, ownerClassLookup);
+        return new SchedulerBinding(handle, false, Collections.emptyList());
+    }
+
+    /**
+     * Create binding from the method handle that either accepts single owner argument
+     * (<code>null</code> for static methods) or has no arguments at all.
+     * The handle must return {@link Scheduler} or its subtype, <code>null</code> result means
+     * that the next resolver should be consulted.
+     * @param resolver the method handle to calculate scheduler
+     * @return the binding
+     */
+    public static SchedulerBinding of(MethodHandle resolver) {
+        MethodType type = resolver.type();
+        MethodHandle handle;
+        switch (type.parameterCount()) {
+            case 0:
+                handle = MethodHandles.dropArguments(resolver, 0, Object.class);
+                break;
+            case 1:
+                handle = resolver;
+                break;
+            default:
+                throw new IllegalArgumentException("Resolver method handle must accept at most one argument: " + type);
+        }
+        return new SchedulerBinding(handle.asType(RESOLVER_TYPE), false, Collections.emptyList());
+    }
+
+    public SchedulerBinding validWhile(SwitchPoint switchPoint) {
+        List<SwitchPoint> newSwitchPoints = new ArrayList<>(switchPoints.size() + 1);
+        newSwitchPoints.addAll(switchPoints);
+        newSwitchPoints.add(switchPoint);
+        return new SchedulerBinding(resolver, constant, Collections.unmodifiableList(newSwitchPoints));
+    }
+
+    public boolean isNone() {
+        return null == resolver;
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+
+    /**
+     * @return method handle of type <code>(Object)Scheduler</code> or <code>null</code> for {@link #none()}
+     */
+    public MethodHandle resolver() {
+        return resolver;
+    }
+
+    public List<SwitchPoint> switchPoints() {
+        return switchPoints;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%s[resolver=%s, constant=%s, switch-points=%d]",
+            getClass().getSimpleName(), resolver, constant, switchPoints.size()
+        );
+    }
+}
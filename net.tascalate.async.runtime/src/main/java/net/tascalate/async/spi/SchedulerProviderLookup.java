@@ -26,6 +26,7 @@ package net.tascalate.async.spi;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
@@ -72,6 +73,14 @@ public class SchedulerProviderLookup {
     
     abstract public static class InstanceAccessor extends Accessor {
         abstract protected Object doRead(Object target) throws Throwable;
+        
+        /**
+         * @return method handle of type <code>(Object target)Scheduler</code> to read the scheduler
+         */
+        public MethodHandle asMethodHandle() {
+            return INSTANCE_READ.bindTo(this);
+        }
+        
         final public Scheduler read(Object target) {
             try {
                 return (Scheduler)doRead(target);
@@ -85,6 +94,21 @@ public class SchedulerProviderLookup {
     
     abstract public static class ClassAccessor extends Accessor {
         abstract protected Object doRead() throws Throwable;
+        
+        /**
+         * @return method handle of type <code>()Scheduler</code> to read the scheduler
+         */
+        public MethodHandle asMethodHandle() {
+            return CLASS_READ.bindTo(this);
+        }
+        
+        /**
+         * @return true if the value read never changes, i.e. it's a static final field
+         */
+        public boolean isConstant() {
+            return false;
+        }
+        
         final public Scheduler read() {
             try {
                 return (Scheduler)doRead();
@@ -115,6 +139,16 @@ public class SchedulerProviderLookup {
             return getter.invoke();
         }
         
+        @Override
+        public MethodHandle asMethodHandle() {
+            return getter.asType(CLASS_READ_TYPE);
+        }
+        
+        @Override
+        public boolean isConstant() {
+            return Modifier.isFinal(field.getModifiers());
+        }
+        
         @Override
         public String toString() {
             return "FIELD: {" + field.toString() + "}";
@@ -140,6 +174,11 @@ public class SchedulerProviderLookup {
             return getter.invoke(target);
         }
         
+        @Override
+        public MethodHandle asMethodHandle() {
+            return getter.asType(INSTANCE_READ_TYPE);
+        }
+        
         @Override
         public String toString() {
             return "FIELD: {" + field.toString() + "}";
@@ -165,6 +204,12 @@ public class SchedulerProviderLookup {
             return getter.invoke();
         }
         
+        @Override
+        public MethodHandle asMethodHandle() {
+            // Declared checked exceptions are wrapped by read()
+            return method.getExceptionTypes().length == 0 ? getter.asType(CLASS_READ_TYPE) : super.asMethodHandle();
+        }
+        
         @Override
         public String toString() {
             return "METHOD: {" + method.toString() + "}";
@@ -190,12 +235,32 @@ public class SchedulerProviderLookup {
             return getter.invoke(target);
         }
         
+        @Override
+        public MethodHandle asMethodHandle() {
+            // Declared checked exceptions are wrapped by read()
+            return method.getExceptionTypes().length == 0 ? getter.asType(INSTANCE_READ_TYPE) : super.asMethodHandle();
+        }
+        
         @Override
         public String toString() {
             return "METHOD: {" + method.toString() + "}";
         }        
     }
     
+    private static final MethodType CLASS_READ_TYPE    = MethodType.methodType(Scheduler.class);
+    private static final MethodType INSTANCE_READ_TYPE = MethodType.methodType(Scheduler.class, Object.class);
+    private static final MethodHandle CLASS_READ;
+    private static final MethodHandle INSTANCE_READ;
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            CLASS_READ    = lookup.findVirtual(ClassAccessor.class, "read", CLASS_READ_TYPE);
+            INSTANCE_READ = lookup.findVirtual(InstanceAccessor.class, "read", INSTANCE_READ_TYPE);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+    
     static final Accessor NO_ACCESSOR = new Accessor() {
         protected boolean isVisibleTo(Class<?> subClass) {
             return false;
@@ -242,8 +307,8 @@ public class SchedulerProviderLookup {
         }
     }
     
-    private final Cache<Class<?>, Accessor> instanceAccessorsCache = new Cache<>();
-    private final Cache<Class<?>, Accessor> classAccessorsCache = new Cache<>();
+    private final Cache<Class<?>, Accessor> instanceAccessorsCache = Cache.forClasses();
+    private final Cache<Class<?>, Accessor> classAccessorsCache = Cache.forClasses();
     
     private final boolean inspectSuperclasses;
     private final boolean inspectInterfaces;
@@ -33,4 +33,28 @@ public interface SchedulerResolver {
     int priority();
     
     Scheduler resolve(Object owner, MethodHandles.Lookup ownerClassLookup);
+    
+    /**
+     * Bind this resolver to the class that declares <code>@async</code> methods. 
+     * The binding is calculated once per invocation site and lets the runtime 
+     * to skip resolvers that never apply to the class or to use scheduler as a constant.
+     * The default implementation consults {@link #resolve(Object, MethodHandles.Lookup)} 
+     * on every invocation.
+     * @param ownerClassLookup the lookup of the class that declares <code>@async</code> method
+     * @return the binding, never <code>null</code>
+     */
+    default SchedulerBinding bind(MethodHandles.Lookup ownerClassLookup) {
+        return SchedulerBinding.dynamic(this, ownerClassLookup);
+    }
+    
+    /**
+     * Tells whether this resolver reads the scheduler from {@link net.tascalate.async.SchedulerProvider} 
+     * fields or getters of the owner class. When the bytecode enhancer reads such member directly 
+     * in the <code>@async</code> method then the resolver is not consulted, the value read 
+     * is used instead at the same priority.
+     * @return true if resolver reads schedulers provided by owner class members
+     */
+    default boolean readsSchedulerProviders() {
+        return false;
+    }
 }
@@ -0,0 +1,53 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.spi;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Canceller of the foreign {@link CompletionStage}-s that are neither {@link java.util.concurrent.Future}-s
+ * nor have public <code>completeExceptionally(Throwable)</code> method.
+ * <p>Cancellers are registered via {@link java.util.ServiceLoader} like {@link AwaitableInspector}-s 
+ * and consulted in the order of the {@link #priority()}, highest first, when the awaited stage 
+ * must be cancelled because the <code>@async</code> method is cancelled or the await is timed out.
+ */
+public interface StageCanceller {
+    
+    int priority();
+    
+    /**
+     * @param stage the stage being cancelled
+     * @return true if this canceller knows how to cancel the stage
+     */
+    boolean accepts(CompletionStage<?> stage);
+    
+    /**
+     * Cancel the stage accepted by this canceller.
+     * @param stage the stage to cancel
+     * @param mayInterruptIfRunning whether the thread that completes the stage may be interrupted
+     * @return true if the stage was cancelled by this call
+     */
+    boolean cancel(CompletionStage<?> stage, boolean mayInterruptIfRunning);
+}
@@ -24,113 +24,323 @@
  */
 package net.tascalate.async.util;
 
-import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Objects;
 import java.util.function.Function;
 
+/**
+ * Cache with weak keys and compute-once semantics: the producer is invoked at most once per key 
+ * at a time, concurrent requests for the same key wait for its result.
+ * <p>Lookup of the already computed value is lock-free and allocation-free. Keys are compared 
+ * with <code>equals</code>, values are held strongly. Caches created via {@link #forClasses()} 
+ * keep values in {@link ClassValue}-s, others keep values in the striped hash table 
+ * where only the misses lock the stripe, and only for the time of the insertion.
+ */
 public class Cache<K, V> {
-    private final ConcurrentMap<Reference<K>, Object> producerMutexes = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Reference<K>, V> valueMap = new ConcurrentHashMap<>();
-    private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+    private final Store<K, V> store;
+    
+    public Cache() {
+        this(new StripedStore<>());
+    }
+    
+    private Cache(Store<K, V> store) {
+        this.store = store;
+    }
+    
+    /**
+     * @return cache for {@link Class} keys that is backed by {@link ClassValue}
+     */
+    public static <V> Cache<Class<?>, V> forClasses() {
+        return new Cache<>(new ClassValueStore<>());
+    }
 
     public V get(K key, Function<? super K, ? extends V> producer) {
-        expungeStaleEntries();
-
-        Reference<K> lookupKeyRef = new KeyReference<K>(key);
-        V value;
+        Objects.requireNonNull(key, "Key must not be null");
+        return store.slotOf(key).get(key, producer);
+    }
 
-        // Try to get a cached value.
-        value = valueMap.get(lookupKeyRef);
+    public V remove(K key) {
+        Objects.requireNonNull(key, "Key must not be null");
+        Slot<V> slot = store.remove(key);
+        return null == slot ? null : slot.value;
+    }
 
-        if (value != null) {
-            // A cached value was found.
-            return value;
+    public void clear() {
+        store.clear();
+    }
+    
+    static abstract class Store<K, V> {
+        abstract Slot<V> slotOf(K key);
+        abstract Slot<V> remove(K key);
+        abstract void clear();
+    }
+    
+    static class Slot<V> {
+        volatile V value;
+        // Guarded by this
+        private Thread producerThread;
+        
+        <K> V get(K key, Function<? super K, ? extends V> producer) {
+            V result = value;
+            return null != result ? result : compute(key, producer);
         }
-
-        Object mutex = getOrCreateMutex(lookupKeyRef);
-        synchronized (mutex) {
+        
+        private <K> V compute(K key, Function<? super K, ? extends V> producer) {
+            Thread currentThread = Thread.currentThread();
+            boolean interrupted = false;
             try {
-                // Double-check after getting mutex
-                value = valueMap.get(lookupKeyRef);
-                if (value == null) {
-                    value = producer.apply(key);
-                    final Reference<K> actualKeyRef = new KeyReference<K>(key, queue);
-                    valueMap.put(actualKeyRef, value);
+                synchronized (this) {
+                    while (true) {
+                        if (null != value) {
+                            return value;
+                        } else if (null == producerThread) {
+                            producerThread = currentThread;
+                            break;
+                        } else if (producerThread == currentThread) {
+                            throw new IllegalStateException("Recursive computation of the value for the key " + key);
+                        }
+                        try {
+                            wait();
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
                 }
             } finally {
-                producerMutexes.remove(lookupKeyRef, mutex);
+                if (interrupted) {
+                    currentThread.interrupt();
+                }
             }
-        }
-
-        return value;
-    }
-
-    public V remove(K key) {
-        Reference<K> lookupKeyRef = new KeyReference<K>(key);
-        Object mutex = getOrCreateMutex(lookupKeyRef);
-        synchronized (mutex) {
+            V result = null;
             try {
-                final V value = valueMap.remove(lookupKeyRef);
-                return value;
+                result = Objects.requireNonNull(producer.apply(key), "Producer must not return null");
+                return result;
             } finally {
-                producerMutexes.remove(lookupKeyRef, mutex);
+                synchronized (this) {
+                    // On failure next waiting thread (if any) tries to compute the value
+                    producerThread = null;
+                    value = result;
+                    notifyAll();
+                }
             }
         }
     }
-
-    protected Object getOrCreateMutex(final Reference<K> keyRef) {
-        return producerMutexes.computeIfAbsent(keyRef, newProducerLock());
+    
+    static final class ClassValueStore<K, V> extends Store<K, V> {
+        private volatile ClassValue<Slot<V>> slots = newSlots();
+        
+        @Override
+        Slot<V> slotOf(K key) {
+            return slots.get((Class<?>)key);
+        }
+        
+        @Override
+        Slot<V> remove(K key) {
+            ClassValue<Slot<V>> current = slots;
+            Slot<V> slot = current.get((Class<?>)key);
+            current.remove((Class<?>)key);
+            return slot;
+        }
+        
+        @Override
+        void clear() {
+            // Entries of the old instance are collected with it
+            slots = newSlots();
+        }
+        
+        private static <V> ClassValue<Slot<V>> newSlots() {
+            return new ClassValue<Slot<V>>() {
+                @Override
+                protected Slot<V> computeValue(Class<?> type) {
+                    return new Slot<>();
+                }
+            };
+        }
     }
-
-    private void expungeStaleEntries() {
-        for (Reference<? extends K> ref; (ref = queue.poll()) != null;) {
+    
+    static final class StripedStore<K, V> extends Store<K, V> {
+        private final Stripe<K, V>[] stripes;
+        private final int mask;
+        
+        StripedStore() {
+            int count = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()));
             @SuppressWarnings("unchecked")
-            Reference<K> keyRef = (Reference<K>) ref;
-            // keyRef now is equal only to itself while referent is cleared
-            // already
-            // so it's safe to remove it without ceremony (like
-            // getOrCreateMutex(keyRef) usage)
-            valueMap.remove(keyRef);
+            Stripe<K, V>[] newStripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                newStripes[i] = new Stripe<>();
+            }
+            stripes = newStripes;
+            mask    = count - 1;
+        }
+        
+        @Override
+        Slot<V> slotOf(K key) {
+            int hash = spread(key.hashCode());
+            Stripe<K, V> stripe = stripes[hash & mask];
+            Entry<K, V> entry = stripe.find(key, hash);
+            return null != entry ? entry.slot : stripe.insert(key, hash).slot;
+        }
+        
+        @Override
+        Slot<V> remove(K key) {
+            int hash = spread(key.hashCode());
+            Entry<K, V> entry = stripes[hash & mask].remove(key, hash);
+            return null == entry ? null : entry.slot;
+        }
+        
+        @Override
+        void clear() {
+            for (Stripe<K, V> stripe : stripes) {
+                stripe.clear();
+            }
+        }
+        
+        private static int spread(int h) {
+            h ^= (h >>> 16);
+            return h ^ (h >>> 7);
         }
     }
     
-    
-    @SuppressWarnings("unchecked")
-    private static <K> Function<K, Object> newProducerLock() {
-        return (Function<K, Object>)NEW_PRODUCER_LOCK;
-    }
-
-    static class KeyReference<K> extends WeakReference<K> {
-        private final int referentHashCode;
-
-        KeyReference(K key) {
-            this(key, null);
+    /**
+     * Copy-on-write hash table with immutable chains, readers never lock.
+     */
+    static final class Stripe<K, V> {
+        private static final int INITIAL_CAPACITY = 8;
+        
+        private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+        private volatile Entry<K, V>[] table = newTable(INITIAL_CAPACITY);
+        // Guarded by this
+        private int size;
+        
+        Entry<K, V> find(K key, int hash) {
+            Entry<K, V>[] current = table;
+            for (Entry<K, V> e = current[indexOf(hash, current)]; null != e; e = e.next) {
+                if (e.hash == hash) {
+                    K k = e.get();
+                    if (k == key || (null != k && key.equals(k))) {
+                        return e;
+                    }
+                }
+            }
+            return null;
         }
-
-        KeyReference(K key, ReferenceQueue<K> queue) {
-            super(key, queue);
-            referentHashCode = key == null ? 0 : key.hashCode();
+        
+        synchronized Entry<K, V> insert(K key, int hash) {
+            expungeStaleEntries();
+            Entry<K, V> existing = find(key, hash);
+            if (null != existing) {
+                return existing;
+            }
+            Entry<K, V>[] current = table;
+            if (size >= current.length - (current.length >>> 2)) {
+                current = resize(current);
+            }
+            int index = indexOf(hash, current);
+            Entry<K, V> entry = new Entry<>(key, hash, new Slot<>(), current[index], queue);
+            Entry<K, V>[] updated = current.clone();
+            updated[index] = entry;
+            size++;
+            table = updated;
+            return entry;
         }
-
-        public int hashCode() {
-            return referentHashCode;
+        
+        synchronized Entry<K, V> remove(K key, int hash) {
+            expungeStaleEntries();
+            Entry<K, V> entry = find(key, hash);
+            if (null != entry) {
+                unlink(entry);
+            }
+            return entry;
         }
-
-        public boolean equals(Object other) {
-            if (this == other)
-                return true;
-            if (null == other || other.getClass() != KeyReference.class)
-                return false;
-            Object r1 = this.get();
-            Object r2 = ((KeyReference<?>) other).get();
-            return null == r1 ? null == r2 : r1.equals(r2);
+        
+        synchronized void clear() {
+            table = newTable(INITIAL_CAPACITY);
+            size  = 0;
+            while (null != queue.poll()) {
+                // Drop stale references of the old table
+            }
+        }
+        
+        private void expungeStaleEntries() {
+            for (Object ref; null != (ref = queue.poll());) {
+                @SuppressWarnings("unchecked")
+                Entry<K, V> entry = (Entry<K, V>)ref;
+                unlink(entry);
+            }
+        }
+        
+        private void unlink(Entry<K, V> entry) {
+            Entry<K, V>[] current = table;
+            int index = indexOf(entry.hash, current);
+            Entry<K, V> head = current[index];
+            // Copy the prefix of the immutable chain that precedes the entry
+            Entry<K, V> newHead = entry.next;
+            boolean found = false;
+            for (Entry<K, V> e = head; null != e; e = e.next) {
+                if (e == entry) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return;
+            }
+            int removed = 1;
+            for (Entry<K, V> e = head; e != entry; e = e.next) {
+                K k = e.get();
+                if (null == k) {
+                    // Stale, drop it as well
+                    removed++;
+                } else {
+                    newHead = new Entry<>(k, e.hash, e.slot, newHead, queue);
+                }
+            }
+            Entry<K, V>[] updated = current.clone();
+            updated[index] = newHead;
+            size -= removed;
+            table = updated;
+        }
+        
+        private Entry<K, V>[] resize(Entry<K, V>[] current) {
+            Entry<K, V>[] updated = newTable(current.length << 1);
+            int count = 0;
+            for (Entry<K, V> head : current) {
+                for (Entry<K, V> e = head; null != e; e = e.next) {
+                    K k = e.get();
+                    if (null == k) {
+                        // Stale, will be discarded
+                        continue;
+                    }
+                    int index = indexOf(e.hash, updated);
+                    updated[index] = new Entry<>(k, e.hash, e.slot, updated[index], queue);
+                    count++;
+                }
+            }
+            size = count;
+            return updated;
+        }
+        
+        private static int indexOf(int hash, Entry<?, ?>[] table) {
+            return (hash >>> 4) & (table.length - 1);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static <K, V> Entry<K, V>[] newTable(int capacity) {
+            return new Entry[capacity];
         }
     }
-
     
-    
-    private static final Function<Object, Object> NEW_PRODUCER_LOCK = k -> new Object(); 
+    static final class Entry<K, V> extends WeakReference<K> {
+        final int hash;
+        final Slot<V> slot;
+        final Entry<K, V> next;
+        
+        Entry(K key, int hash, Slot<V> slot, Entry<K, V> next, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.slot = slot;
+            this.next = next;
+        }
+    }
 }
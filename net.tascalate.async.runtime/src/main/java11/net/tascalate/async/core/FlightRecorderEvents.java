@@ -0,0 +1,184 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.core;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Hooks for JDK Flight Recorder events, Java 11+ version.
+ * <p>Events are duration events that may begin and end on different threads, 
+ * the thread recorded is the one that ends the event. 
+ * Nothing is allocated unless the corresponding event type is enabled in the recording.
+ */
+final class FlightRecorderEvents {
+    // Not a compile-time constant, so it's not inlined into callers
+    static final boolean ENABLED = isAvailable();
+    
+    private FlightRecorderEvents() {}
+    
+    static Object beginSuspend(AbstractAsyncMethod method, CompletionStage<?> awaited) {
+        return Recorder.beginSuspend(method, awaited);
+    }
+    
+    static void endSuspend(Object token) {
+        Recorder.end(token);
+    }
+    
+    static Object beginGeneratorYield(AbstractAsyncMethod method) {
+        return Recorder.beginGeneratorYield(method);
+    }
+    
+    static void endGeneratorYield(Object token) {
+        Recorder.end(token);
+    }
+    
+    static Object beginGeneratorNext(AbstractAsyncMethod method) {
+        return Recorder.beginGeneratorNext(method);
+    }
+    
+    static void endGeneratorNext(Object token) {
+        Recorder.end(token);
+    }
+    
+    static Runnable dispatching(AbstractAsyncMethod method, Runnable resumer) {
+        return Recorder.dispatching(method, resumer);
+    }
+    
+    private static boolean isAvailable() {
+        // Runtime may be used as a named module without jdk.jfr resolved
+        Optional<Module> jfr = ModuleLayer.boot().findModule("jdk.jfr");
+        return jfr.isPresent() && FlightRecorderEvents.class.getModule().canRead(jfr.get());
+    }
+    
+    // Separate class, so jdk.jfr types are loaded only when available
+    static final class Recorder {
+        private static final EventType SUSPEND_EVENT   = EventType.getEventType(SuspendEvent.class);
+        private static final EventType YIELD_EVENT     = EventType.getEventType(GeneratorYieldEvent.class);
+        private static final EventType NEXT_EVENT      = EventType.getEventType(GeneratorNextEvent.class);
+        private static final EventType DISPATCH_EVENT  = EventType.getEventType(DispatchEvent.class);
+        
+        static Object beginSuspend(AbstractAsyncMethod method, CompletionStage<?> awaited) {
+            if (!SUSPEND_EVENT.isEnabled()) {
+                return null;
+            }
+            SuspendEvent event = new SuspendEvent();
+            describe(event, method);
+            event.awaitedType = null == awaited ? null : awaited.getClass();
+            event.begin();
+            return event;
+        }
+        
+        static Object beginGeneratorYield(AbstractAsyncMethod method) {
+            if (!YIELD_EVENT.isEnabled()) {
+                return null;
+            }
+            GeneratorYieldEvent event = new GeneratorYieldEvent();
+            describe(event, method);
+            event.begin();
+            return event;
+        }
+        
+        static Object beginGeneratorNext(AbstractAsyncMethod method) {
+            if (!NEXT_EVENT.isEnabled()) {
+                return null;
+            }
+            GeneratorNextEvent event = new GeneratorNextEvent();
+            describe(event, method);
+            event.begin();
+            return event;
+        }
+        
+        static Runnable dispatching(AbstractAsyncMethod method, Runnable resumer) {
+            if (!DISPATCH_EVENT.isEnabled()) {
+                return resumer;
+            }
+            DispatchEvent event = new DispatchEvent();
+            describe(event, method);
+            event.begin();
+            return () -> {
+                event.commit();
+                resumer.run();
+            };
+        }
+        
+        static void end(Object token) {
+            if (null != token) {
+                ((Event)token).commit();
+            }
+        }
+        
+        private static void describe(AsyncMethodEvent event, AbstractAsyncMethod method) {
+            Class<?> methodClass = method.getClass();
+            Class<?> originClass = methodClass.getEnclosingClass();
+            event.originClass     = null == originClass ? methodClass : originClass;
+            event.methodSignature = method.methodSignature();
+        }
+    }
+    
+    @Category({"Tascalate", "Async/Await"})
+    @StackTrace(false)
+    abstract static class AsyncMethodEvent extends Event {
+        @Label("Origin Class")
+        Class<?> originClass;
+        
+        @Label("Method Signature")
+        String methodSignature;
+    }
+    
+    @Name("net.tascalate.async.Suspend")
+    @Label("Async Method Suspended")
+    @Description("The @async method is suspended on await until the awaited stage is completed")
+    static final class SuspendEvent extends AsyncMethodEvent {
+        @Label("Awaited Type")
+        Class<?> awaitedType;
+    }
+    
+    @Name("net.tascalate.async.GeneratorYield")
+    @Label("Async Generator Yield")
+    @Description("The @async generator is suspended on yield until the consumer requests the next value")
+    static final class GeneratorYieldEvent extends AsyncMethodEvent {
+    }
+    
+    @Name("net.tascalate.async.GeneratorNext")
+    @Label("Async Generator Next")
+    @Description("The consumer is suspended on next until the @async generator yields the value")
+    static final class GeneratorNextEvent extends AsyncMethodEvent {
+    }
+    
+    @Name("net.tascalate.async.Dispatch")
+    @Label("Async Method Dispatch")
+    @Description("The resumption of the @async method is queued by the scheduler")
+    static final class DispatchEvent extends AsyncMethodEvent {
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Access to <code>java.lang.ScopedValue</code>, Java 21+ version. 
+ * <p>The API is linked via method handles: it's a preview API in Java 21, 
+ * so the direct usage would require all applications to enable preview features.
+ * Only the subset that is not changed since Java 21 is used.
+ */
+final class ScopedValues {
+    private ScopedValues() {}
+    
+    private static final Class<?> SCOPED_VALUE_CLASS;
+    // ()Object
+    private static final MethodHandle NEW_INSTANCE;
+    // (Object scopedValue)Object, null if not bound
+    private static final MethodHandle GET;
+    // (Object scopedValue, Object value, Runnable code)void
+    private static final MethodHandle RUN_WHERE;
+    
+    static {
+        Class<?> scopedValueClass = null;
+        MethodHandle newInstance = null, get = null, runWhere = null;
+        try {
+            Class<?> svClass = Class.forName("java.lang.ScopedValue");
+            Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            
+            newInstance = lookup.findStatic(svClass, "newInstance", MethodType.methodType(svClass))
+                                .asType(MethodType.methodType(Object.class));
+            
+            MethodHandle isBound = lookup.findVirtual(svClass, "isBound", MethodType.methodType(boolean.class));
+            get = MethodHandles.guardWithTest(
+                isBound, 
+                lookup.findVirtual(svClass, "get", MethodType.methodType(Object.class)),
+                MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, svClass)
+            ).asType(MethodType.methodType(Object.class, Object.class));
+            
+            MethodHandle where = lookup.findStatic(svClass, "where", MethodType.methodType(carrierClass, svClass, Object.class));
+            MethodHandle run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class));
+            runWhere = MethodHandles.collectArguments(run, 0, where)
+                                    .asType(MethodType.methodType(void.class, Object.class, Object.class, Runnable.class));
+            
+            scopedValueClass = svClass;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            // Unsupported
+        }
+        SCOPED_VALUE_CLASS = scopedValueClass;
+        NEW_INSTANCE = newInstance;
+        GET = get;
+        RUN_WHERE = runWhere;
+    }
+    
+    static boolean isSupported() {
+        return null != SCOPED_VALUE_CLASS;
+    }
+    
+    static boolean isScopedValue(Object value) {
+        return null != SCOPED_VALUE_CLASS && SCOPED_VALUE_CLASS.isInstance(value);
+    }
+    
+    static Object newInstance() {
+        checkSupported();
+        try {
+            return (Object)NEW_INSTANCE.invokeExact();
+        } catch (Error | RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    static Object get(Object scopedValue) {
+        try {
+            return (Object)GET.invokeExact(scopedValue);
+        } catch (Error | RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    static void runWhere(Object scopedValue, Object value, Runnable code) {
+        try {
+            RUN_WHERE.invokeExact(scopedValue, value, code);
+        } catch (Error | RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * @return method handle of type <code>()Object</code> that reads the value bound or <code>null</code>
+     */
+    static MethodHandle getter(Object scopedValue) {
+        return MethodHandles.insertArguments(GET, 0, scopedValue);
+    }
+    
+    private static void checkSupported() {
+        if (null == SCOPED_VALUE_CLASS) {
+            throw new UnsupportedOperationException("Scoped values are not available in this Java runtime");
+        }
+    }
+}
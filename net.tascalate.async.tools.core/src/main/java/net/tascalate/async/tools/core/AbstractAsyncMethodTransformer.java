@@ -40,7 +40,9 @@ import static net.tascalate.async.tools.core.BytecodeIntrospection.visibleParame
 import static net.tascalate.async.tools.core.BytecodeIntrospection.visibleTypeAnnotationsOf;
 import static net.tascalate.asmx.Opcodes.*;
 
+import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -88,6 +90,21 @@ abstract public class AbstractAsyncMethodTransformer {
     
     private final static Type SCHEDULER_TYPE             = Type.getObjectType("net/tascalate/async/Scheduler");
     private final static Type SCHEDULER_PROVIDER_TYPE    = Type.getObjectType("net/tascalate/async/SchedulerProvider");
+    
+    private final static Handle CURRENT_SCHEDULER_BOOTSTRAP = new Handle(
+        H_INVOKESTATIC, ASYNC_METHOD_EXECUTOR_TYPE.getInternalName(), "currentSchedulerCallSite",
+        Type.getMethodDescriptor(
+            Type.getType(CallSite.class), 
+            METHOD_HANDLES_LOOKUP_TYPE, STRING_TYPE, Type.getType(MethodType.class)
+        ),
+        false
+    );
+    
+    private final static Handle PROVIDED_SCHEDULER_BOOTSTRAP = new Handle(
+        H_INVOKESTATIC, ASYNC_METHOD_EXECUTOR_TYPE.getInternalName(), "providedSchedulerCallSite",
+        CURRENT_SCHEDULER_BOOTSTRAP.getDesc(),
+        false
+    );
 
     protected final ClassNode classNode;
     protected final MethodNode originalAsyncMethod;
@@ -195,6 +212,7 @@ abstract public class AbstractAsyncMethodTransformer {
         addAnonymousClassConstructor(asyncRunnableClass, superClassType, outerClassField);
         addAnonymousClassRunMethod(asyncRunnableClass, outerClassField);
         addAnonymousClassToStringMethod(asyncRunnableClass, superClassType);
+        addAnonymousClassMethodSignatureMethod(asyncRunnableClass);
         return asyncRunnableClass;
     }
     
@@ -267,6 +285,16 @@ abstract public class AbstractAsyncMethodTransformer {
         
     }
     
+    protected MethodVisitor addAnonymousClassMethodSignatureMethod(ClassNode asyncRunnableClass) {
+        MethodVisitor result = asyncRunnableClass.visitMethod(
+            ACC_PROTECTED, "methodSignature", Type.getMethodDescriptor(STRING_TYPE), null, null
+        );
+        result.visitLdcInsn(classNode.name.replace('/', '.') + ": " + getMethodSignature(originalAsyncMethod, true));
+        result.visitInsn(ARETURN);
+        result.visitMaxs(1, 1);
+        return result;
+    }
+    
     protected Object[] findOwnerInvokeDynamic(AbstractInsnNode instruction, List<MethodNode> ownerMethods) {
         if (instruction instanceof InvokeDynamicInsnNode) {
             InvokeDynamicInsnNode n = (InvokeDynamicInsnNode) instruction;
@@ -332,26 +360,44 @@ abstract public class AbstractAsyncMethodTransformer {
         result.visitCode();
 
         int providedSchedulerParamIdx = schedulerProviderParamIdx(originalAsyncMethod);
-        if (providedSchedulerParamIdx >= 0) {
-            result.visitVarInsn(ALOAD, providedSchedulerParamIdx + thisArgShift);
-        } else {
-            result.visitInsn(ACONST_NULL);
-        }
-        // Resolve by owner if non-static
-        if (isStatic) {
-            result.visitInsn(ACONST_NULL);
+        if ((classNode.version & 0xFFFF) >= V1_7) {
+            // Resolve via call site bound once to the owner class, the call site is kept 
+            // out of this @suspendable method to let it go without continuable analysis
+            if (!isStatic) {
+                result.visitVarInsn(ALOAD, 0);
+            }
+            if (providedSchedulerParamIdx >= 0) {
+                result.visitVarInsn(ALOAD, providedSchedulerParamIdx + thisArgShift);
+            } else {
+                result.visitInsn(ACONST_NULL);
+            }
+            MethodNode schedulerAccessor = createSchedulerAccessor(isStatic, providedSchedulerParamIdx >= 0);
+            result.visitMethodInsn(
+                INVOKESTATIC, classNode.name, schedulerAccessor.name, schedulerAccessor.desc, 
+                (classNode.access & ACC_INTERFACE) != 0
+            );
         } else {
-            result.visitVarInsn(ALOAD, 0);
+            if (providedSchedulerParamIdx >= 0) {
+                result.visitVarInsn(ALOAD, providedSchedulerParamIdx + thisArgShift);
+            } else {
+                result.visitInsn(ACONST_NULL);
+            }
+            // Resolve by owner if non-static
+            if (isStatic) {
+                result.visitInsn(ACONST_NULL);
+            } else {
+                result.visitVarInsn(ALOAD, 0);
+            }
+            // result.visitLdcInsn(Type.getObjectType(classNode.name));
+            result.visitMethodInsn(
+                INVOKESTATIC, METHOD_HANDLES_TYPE.getInternalName(), "lookup", 
+                Type.getMethodDescriptor(METHOD_HANDLES_LOOKUP_TYPE), false
+            );
+            result.visitMethodInsn(
+                INVOKESTATIC, ASYNC_METHOD_EXECUTOR_TYPE.getInternalName(), "currentScheduler", 
+                Type.getMethodDescriptor(SCHEDULER_TYPE, SCHEDULER_TYPE, OBJECT_TYPE, METHOD_HANDLES_LOOKUP_TYPE), false
+            );
         }
-        // result.visitLdcInsn(Type.getObjectType(classNode.name));
-        result.visitMethodInsn(
-            INVOKESTATIC, METHOD_HANDLES_TYPE.getInternalName(), "lookup", 
-            Type.getMethodDescriptor(METHOD_HANDLES_LOOKUP_TYPE), false
-        );
-        result.visitMethodInsn(
-            INVOKESTATIC, ASYNC_METHOD_EXECUTOR_TYPE.getInternalName(), "currentScheduler", 
-            Type.getMethodDescriptor(SCHEDULER_TYPE, SCHEDULER_TYPE, OBJECT_TYPE, METHOD_HANDLES_LOOKUP_TYPE), false
-        );
         
         String constructorDesc = Type.getMethodDescriptor(
             Type.VOID_TYPE, 
@@ -557,6 +603,60 @@ abstract public class AbstractAsyncMethodTransformer {
     }
     
     
+    protected MethodNode createSchedulerAccessor(boolean isStatic, boolean hasExplicitScheduler) {
+        Type ownerType = Type.getObjectType(classNode.name);
+        Type[] argTypes = isStatic ? new Type[] {SCHEDULER_TYPE} : new Type[] {ownerType, SCHEDULER_TYPE};
+        String desc = Type.getMethodDescriptor(SCHEDULER_TYPE, argTypes);
+        // Same accessor is shared by all async methods of the class with the same shape
+        String kind = hasExplicitScheduler ? "E" : "C";
+        
+        MethodNode accessMethodNode = getAccessMethod(classNode.name, "currentScheduler", desc, kind);
+        if (null != accessMethodNode) {
+            return accessMethodNode;
+        }
+        
+        List<MethodNode> methods = methodsOf(classNode);
+        String name = createAccessMethodName(methods);
+
+        // Not @suspendable - invokedynamic is opaque for continuable methods analysis
+        int publicFlag = (classNode.access & ACC_INTERFACE) != 0 ? ACC_PUBLIC : 0;
+        accessMethodNode = new MethodNode(ACC_STATIC + ACC_SYNTHETIC + publicFlag, name, desc, null, null);
+        accessMethodNode.visitCode();
+        
+        int explicitSchedulerVarIdx = isStatic ? 0 : 1;
+        accessMethodNode.visitVarInsn(ALOAD, explicitSchedulerVarIdx);
+        
+        SchedulerProviderAccessor providerAccessor = hasExplicitScheduler ? 
+            null : SchedulerProviderAccessor.find(classNode, isStatic, helper);
+        List<Type> callSiteArgTypes = new ArrayList<>();
+        callSiteArgTypes.add(SCHEDULER_TYPE);
+        if (null != providerAccessor) {
+            // @SchedulerProvider member is known at build time - read it directly
+            if (log.isDebugEnabled()) {
+                log.debug("Scheduler of " + classNode.name + "." + originalAsyncMethod.name + " is provided by " + providerAccessor);
+            }
+            // Instance member is read from the owner, passed as variable 0
+            providerAccessor.read(accessMethodNode);
+            callSiteArgTypes.add(SCHEDULER_TYPE);
+        }
+        if (!isStatic) {
+            accessMethodNode.visitVarInsn(ALOAD, 0);
+            callSiteArgTypes.add(OBJECT_TYPE);
+        }
+        accessMethodNode.visitInvokeDynamicInsn(
+            "currentScheduler", Type.getMethodDescriptor(SCHEDULER_TYPE, callSiteArgTypes.toArray(new Type[0])), 
+            null != providerAccessor ? PROVIDED_SCHEDULER_BOOTSTRAP : CURRENT_SCHEDULER_BOOTSTRAP
+        );
+        accessMethodNode.visitInsn(ARETURN);
+        accessMethodNode.visitMaxs(callSiteArgTypes.size(), argTypes.length);
+        accessMethodNode.visitEnd();
+        
+        // Register mapping
+        registerAccessMethod(classNode.name, "currentScheduler", desc, kind, accessMethodNode);
+        methods.add(accessMethodNode);
+        return accessMethodNode;
+    }
+    
     protected MethodNode createAccessLambda(InvokeDynamicInsnNode dynNode,
                                             Handle                h,
                                             boolean               isStatic,
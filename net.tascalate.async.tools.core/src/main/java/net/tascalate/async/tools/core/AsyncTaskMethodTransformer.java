@@ -286,7 +286,8 @@ class AsyncTaskMethodTransformer extends AbstractAsyncMethodTransformer {
                                 new MethodInsnNode(INVOKESTATIC, 
                                                    ASYNC_METHOD_EXECUTOR_TYPE.getInternalName(), 
                                                    "await", 
-                                                   Type.getMethodDescriptor(OBJECT_TYPE, COMPLETION_STAGE_TYPE),
+                                                   // Either CompletionStage or Object overload
+                                                   Type.getMethodDescriptor(OBJECT_TYPE, Type.getArgumentTypes(min.desc)),
                                                    false
                                 )
                             );
@@ -0,0 +1,230 @@
+/**
+ * ﻿Copyright 2015-2022 Valery Silaev (http://vsilaev.com)
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.tascalate.async.tools.core;
+
+import static net.tascalate.asmx.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.tascalate.asmx.MethodVisitor;
+import net.tascalate.asmx.Type;
+import net.tascalate.asmx.tree.AnnotationNode;
+import net.tascalate.asmx.tree.ClassNode;
+import net.tascalate.asmx.tree.FieldNode;
+import net.tascalate.asmx.tree.MethodNode;
+
+/**
+ * Build-time counterpart of the runtime <code>SchedulerProviderLookup</code>: finds
+ * the <code>@SchedulerProvider</code> field or getter of the class with <code>@async</code> methods,
+ * so the replacement method reads it directly instead of the reflective lookup at runtime.
+ * The rules are the same as the runtime ones - own members first, then visible members 
+ * of superclasses and interfaces. Whenever the result is not exact (ambiguity, 
+ * unresolvable classes, providers declared by interfaces, getters with declared exceptions)
+ * no accessor is returned and the resolution is left to the runtime.
+ */
+final class SchedulerProviderAccessor {
+    private final static String SCHEDULER_NAME = "net/tascalate/async/Scheduler";
+    private final static String SCHEDULER_PROVIDER_DESCRIPTOR = "Lnet/tascalate/async/SchedulerProvider;";
+    
+    private final static SchedulerProviderAccessor UNRESOLVED = new SchedulerProviderAccessor(null, null, null, 0, false);
+    
+    private final String owner;
+    private final String name;
+    private final String desc;
+    private final int access;
+    private final boolean isMethod;
+    
+    private SchedulerProviderAccessor(String owner, String name, String desc, int access, boolean isMethod) {
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+        this.access = access;
+        this.isMethod = isMethod;
+    }
+    
+    boolean isStatic() {
+        return (access & ACC_STATIC) != 0;
+    }
+    
+    /**
+     * Emit code that leaves the scheduler provided on the stack, 
+     * instance members are read from the local variable 0 (this)
+     */
+    void read(MethodVisitor mv) {
+        if (!isStatic()) {
+            mv.visitVarInsn(ALOAD, 0);
+        }
+        if (isMethod) {
+            int opcode = isStatic() ? INVOKESTATIC : (access & ACC_PRIVATE) != 0 ? INVOKESPECIAL : INVOKEVIRTUAL;
+            mv.visitMethodInsn(opcode, owner, name, desc, false);
+        } else {
+            mv.visitFieldInsn(isStatic() ? GETSTATIC : GETFIELD, owner, name, desc);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return (isMethod ? "METHOD: " : "FIELD: ") + owner + "." + name + desc;
+    }
+    
+    /**
+     * @return the accessor to use for the <code>@async</code> method, either static or instance one, 
+     * or <code>null</code> when there is no provider or it should be resolved at runtime
+     */
+    static SchedulerProviderAccessor find(ClassNode classNode, boolean isStaticMethod, AbstractAsyncMethodTransformer.Helper helper) {
+        SchedulerProviderAccessor result = null;
+        if (!isStaticMethod) {
+            // Instance-level provider has priority, class-level one is used otherwise
+            result = find(classNode, classNode, false, helper, new HashSet<>());
+        }
+        if (null == result) {
+            result = find(classNode, classNode, true, helper, new HashSet<>());
+        }
+        return result == UNRESOLVED ? null : result;
+    }
+    
+    private static SchedulerProviderAccessor find(ClassNode ownerClass, ClassNode targetClass, boolean isStatic, 
+                                                  AbstractAsyncMethodTransformer.Helper helper, Set<String> visitedInterfaces) {
+        SchedulerProviderAccessor accessor = findDeclared(ownerClass, targetClass, isStatic, helper);
+        if (null != accessor) {
+            return accessor;
+        }
+        
+        if (null != targetClass.superName && !isPlatformClass(targetClass.superName)) {
+            ClassNode superClass = resolveClass(targetClass.superName, helper);
+            accessor = null == superClass ? UNRESOLVED : find(ownerClass, superClass, isStatic, helper, visitedInterfaces);
+            if (accessor == UNRESOLVED) {
+                return UNRESOLVED;
+            }
+        }
+        
+        for (String i : interfacesOf(targetClass)) {
+            if (isPlatformClass(i) || !visitedInterfaces.add(i)) {
+                continue;
+            }
+            ClassNode superInterface = resolveClass(i, helper);
+            if (null == superInterface || null != find(ownerClass, superInterface, isStatic, helper, visitedInterfaces)) {
+                // Providers declared by interfaces are either ambiguous or 
+                // require interface method invocations, leave them to the runtime
+                return UNRESOLVED;
+            }
+        }
+        return accessor;
+    }
+    
+    private static SchedulerProviderAccessor findDeclared(ClassNode ownerClass, ClassNode targetClass, boolean isStatic, 
+                                                          AbstractAsyncMethodTransformer.Helper helper) {
+        List<SchedulerProviderAccessor> candidates = new ArrayList<>();
+        for (FieldNode f : fieldsOf(targetClass)) {
+            if (isStatic == ((f.access & ACC_STATIC) != 0) && isAnnotatedAsProvider(f.visibleAnnotations)) {
+                if (!isSchedulerSubtype(Type.getType(f.desc), helper)) {
+                    return UNRESOLVED;
+                }
+                candidates.add(new SchedulerProviderAccessor(targetClass.name, f.name, f.desc, f.access, false));
+            }
+        }
+        for (MethodNode m : BytecodeIntrospection.methodsOf(targetClass)) {
+            if (isStatic == ((m.access & ACC_STATIC) != 0) && 
+                (m.access & (ACC_BRIDGE | ACC_SYNTHETIC)) == 0 && 
+                m.desc.startsWith("()") &&
+                isAnnotatedAsProvider(m.visibleAnnotations)) {
+                
+                if (!isSchedulerSubtype(Type.getReturnType(m.desc), helper) || (null != m.exceptions && !m.exceptions.isEmpty())) {
+                    return UNRESOLVED;
+                }
+                candidates.add(new SchedulerProviderAccessor(targetClass.name, m.name, m.desc, m.access, true));
+            }
+        }
+        switch (candidates.size()) {
+            case 0: 
+                return null;
+            case 1:
+                SchedulerProviderAccessor candidate = candidates.get(0);
+                if ((targetClass.access & ACC_INTERFACE) != 0) {
+                    return UNRESOLVED;
+                }
+                return candidate.isVisibleTo(ownerClass) ? candidate : null;
+            default:
+                // Runtime reports ambiguity
+                return UNRESOLVED;
+        }
+    }
+    
+    private boolean isVisibleTo(ClassNode ownerClass) {
+        if ((access & (ACC_PUBLIC | ACC_PROTECTED)) != 0) {
+            return true;
+        } else if ((access & ACC_PRIVATE) != 0) {
+            return owner.equals(ownerClass.name);
+        } else {
+            return AbstractAsyncMethodTransformer.samePackage(owner, ownerClass.name);
+        }
+    }
+    
+    private static boolean isAnnotatedAsProvider(List<AnnotationNode> annotations) {
+        return null != annotations && annotations.stream().anyMatch(a -> SCHEDULER_PROVIDER_DESCRIPTOR.equals(a.desc));
+    }
+    
+    private static boolean isSchedulerSubtype(Type type, AbstractAsyncMethodTransformer.Helper helper) {
+        if (type.getSort() != Type.OBJECT) {
+            return false;
+        }
+        String className = type.getInternalName();
+        if (SCHEDULER_NAME.equals(className)) {
+            return true;
+        }
+        try {
+            return helper.isSubClass(className, SCHEDULER_NAME);
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+    
+    private static ClassNode resolveClass(String className, AbstractAsyncMethodTransformer.Helper helper) {
+        try {
+            return helper.resolveClass(className);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+    
+    private static boolean isPlatformClass(String className) {
+        // Never declares providers, skip reading class files
+        return className.startsWith("java/") || className.startsWith("javax/");
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<FieldNode> fieldsOf(ClassNode classNode) {
+        return null == classNode.fields ? Collections.<FieldNode>emptyList() : (List<FieldNode>)classNode.fields;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<String> interfacesOf(ClassNode classNode) {
+        return null == classNode.interfaces ? Collections.<String>emptyList() : (List<String>)classNode.interfaces;
+    }
+}